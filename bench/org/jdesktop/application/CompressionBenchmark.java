@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2021 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jdesktop.application;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Measures the tradeoff between the number of bytes written and the CPU time
+ * spent for each {@link LocalStorage.Compression Compression} mode, using a
+ * synthetic session state map like the ones written by {@link SessionStorage}.
+ * <p>
+ * Usage:</p>
+ * <pre>
+ * java -cp build/classes:bench-classes org.jdesktop.application.CompressionBenchmark [entries] [iterations]
+ * </pre>
+ */
+public class CompressionBenchmark {
+
+    private static Map<String, Object> createSessionState(int nEntries) {
+        Map<String, Object> state = new HashMap<>();
+        for (int i = 0; i < nEntries; i++) {
+            String pathname = "component" + i + "/JPanel" + (i % 7) 
+                    + "/null.contentPane/null.layeredPane/JRootPane0/mainFrame";
+            if ((i % 2) == 0) {
+                state.put(pathname, new SessionStorage.TabbedPaneState(i % 5, 
+                        5));
+            } else {
+                state.put(pathname, 100 + i);
+            }
+        }
+        return state;
+    }
+
+    /* The storage leaves its lock file, and may leave other files, in the
+     * directory, which must be deleted first.
+     */
+    private static void deleteDirectory(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    deleteDirectory(file);
+                } else if (!file.delete()) {
+                    System.err.println("couldn't delete " + file);
+                }
+            }
+        }
+        if (!directory.delete()) {
+            System.err.println("couldn't delete " + directory);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int nEntries = (args.length > 0) ? Integer.parseInt(args[0]) : 2000;
+        int iterations = (args.length > 1) ? Integer.parseInt(args[1]) : 20;
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        ApplicationContext context = new ApplicationContext() {};
+        LocalStorage storage = context.getLocalStorage();
+        File directory = Files.createTempDirectory("lsbench").toFile();
+        storage.setDirectory(directory);
+        Map<String, Object> state = createSessionState(nEntries);
+
+        System.out.printf("%-8s %12s %14s %14s%n", "mode", "bytes", 
+                "save cpu ms", "load cpu ms");
+        for (LocalStorage.Compression compression 
+                : LocalStorage.Compression.values()) {
+            String fileName = "session-" + compression + ".xml";
+            storage.setCompression(fileName, compression);
+            for (int i = 0; i < iterations; i++) {  // warm up
+                storage.save(state, fileName);
+                storage.load(fileName);
+            }
+            long saveCpu = 0L, loadCpu = 0L;
+            for (int i = 0; i < iterations; i++) {
+                long t0 = threads.getCurrentThreadCpuTime();
+                storage.save(state, fileName);
+                long t1 = threads.getCurrentThreadCpuTime();
+                storage.load(fileName);
+                long t2 = threads.getCurrentThreadCpuTime();
+                saveCpu += t1 - t0;
+                loadCpu += t2 - t1;
+            }
+            System.out.printf("%-8s %12d %14.2f %14.2f%n", compression, 
+                    storage.getFileLength(fileName), 
+                    saveCpu / 1e6 / iterations, loadCpu / 1e6 / iterations);
+            storage.deleteFile(fileName);
+        }
+        deleteDirectory(directory);
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright (C) 2021 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jdesktop.application;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Map;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JSplitPane;
+import javax.swing.JTabbedPane;
+import javax.swing.JTable;
+import javax.swing.SwingUtilities;
+
+/**
+ * Measures the cost of {@link SessionStorage#save save} and {@link
+ * SessionStorage#restore restore} as component hierarchies grow, using
+ * synthetic, headless trees of <code>JPanels</code> with
+ * <code>JTabbedPanes</code>, <code>JSplitPanes</code> and
+ * <code>JTables</code> scattered through them.
+ * <p>
+ * For each tree size, shape (a fanout of 4 gives deep trees, 64 shallow
+ * ones) and fraction of named components, the benchmark reports the wall
+ * clock time and the bytes allocated by each phase: capturing the tree's
+ * state, encoding and writing it, and reading, decoding and restoring it;
+ * along with the size of the session file. Session files are kept in memory
+ * unless <code>-disk</code> is given, so that the numbers reflect
+ * <code>SessionStorage</code> rather than the file system. Allocations are
+ * only reported by JVMs whose <code>ThreadMXBean</code> supports it.</p>
+ * <p>
+ * Usage:</p>
+ * <pre>
+ * java -Djava.awt.headless=true -cp build/classes:bench-classes org.jdesktop.application.SessionStorageBenchmark [-disk] [iterations] [sizes...]
+ * </pre>
+ */
+public class SessionStorageBenchmark {
+
+    private static final int[] FANOUTS = {4, 64};
+    private static final double[] NAMED = {1.0, 0.5};
+    private static final com.sun.management.ThreadMXBean threads
+            = allocationMXBean();
+
+    private static com.sun.management.ThreadMXBean allocationMXBean() {
+        Object bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean tb
+                    = (com.sun.management.ThreadMXBean) bean;
+            if (tb.isThreadAllocatedMemorySupported()) {
+                tb.setThreadAllocatedMemoryEnabled(true);
+                return tb;
+            }
+        }
+        return null;
+    }
+
+    private static long allocatedBytes() {
+        return (threads == null) ? 0L
+                : threads.getThreadAllocatedBytes(
+                        Thread.currentThread().getId());
+    }
+
+    /* Builds a tree of about nComponents components, breadth first, with
+     * up to fanout children per container.
+     */
+    private static JPanel createTree(int nComponents, int fanout,
+            double named) {
+        JPanel root = new JPanel();
+        root.setName("root");
+        ArrayDeque<Container> containers = new ArrayDeque<>();
+        containers.add(root);
+        int n = 1;
+        while ((n < nComponents) && !containers.isEmpty()) {
+            Container parent = containers.remove();
+            for (int i = 0; (i < fanout) && (n < nComponents); i++, n++) {
+                Component child;
+                switch (n % 16) {
+                    case 3:
+                        JTabbedPane tabs = new JTabbedPane();
+                        tabs.addTab("a", new JLabel("a"));
+                        tabs.addTab("b", new JLabel("b"));
+                        tabs.setSelectedIndex(n % 2);
+                        child = tabs;
+                        break;
+                    case 7:
+                        JSplitPane split = new JSplitPane();
+                        split.setDividerLocation(50 + (n % 100));
+                        child = split;
+                        break;
+                    case 11:
+                        child = new JTable(4, 3 + (n % 5));
+                        break;
+                    case 13:
+                        child = new JLabel("label" + n);
+                        break;
+                    default:
+                        JPanel panel = new JPanel();
+                        containers.add(panel);
+                        child = panel;
+                }
+                // Scatter the unnamed components through the tree
+                if (((n * 2654435761L) >>> 16) % 100 < named * 100) {
+                    child.setName("c" + n);
+                }
+                parent.add(child);
+            }
+        }
+        return root;
+    }
+
+    private static int countComponents(Component c) {
+        int n = 1;
+        if (c instanceof Container) {
+            for (Component child : ((Container) c).getComponents()) {
+                n += countComponents(child);
+            }
+        }
+        return n;
+    }
+
+    private static void run(ApplicationContext context, int iterations,
+            int nComponents, int fanout, double named) throws IOException {
+        SessionStorage ss = context.getSessionStorage();
+        LocalStorage storage = context.getLocalStorage();
+        String fileName = "bench.session.xml";
+        JPanel root = createTree(nComponents, fanout, named);
+        long captureNs = 0L, writeNs = 0L, restoreNs = 0L;
+        long captureBytes = 0L, writeBytes = 0L, restoreBytes = 0L;
+        int entries = 0;
+        for (int i = -iterations; i < iterations; i++) {  // warm up first
+            // Defeat the unchanged-state check and the restore cache
+            ss.invalidate(fileName);
+            long b0 = allocatedBytes(), t0 = System.nanoTime();
+            Map<String, Object> stateMap = ss.capture(
+                    Collections.singletonList(root), fileName);
+            long b1 = allocatedBytes(), t1 = System.nanoTime();
+            ss.write(stateMap, fileName);
+            long b2 = allocatedBytes(), t2 = System.nanoTime();
+            ss.invalidate(fileName);
+            ss.restore(root, fileName);
+            long b3 = allocatedBytes(), t3 = System.nanoTime();
+            if (i >= 0) {
+                captureNs += t1 - t0;
+                writeNs += t2 - t1;
+                restoreNs += t3 - t2;
+                captureBytes += b1 - b0;
+                writeBytes += b2 - b1;
+                restoreBytes += b3 - b2;
+            }
+            entries = stateMap.size();
+        }
+        System.out.printf("%7d %6d %5.0f%% %7d %9.2f %9.2f %9.2f %8d %8d %8d "
+                + "%9d%n", countComponents(root), fanout, named * 100, entries,
+                captureNs / 1e6 / iterations, writeNs / 1e6 / iterations,
+                restoreNs / 1e6 / iterations,
+                captureBytes / 1024 / iterations,
+                writeBytes / 1024 / iterations,
+                restoreBytes / 1024 / iterations,
+                storage.getFileLength(fileName));
+        storage.deleteFile(fileName);
+    }
+
+    /* The storage leaves its lock file, and may leave other files, in the
+     * directory, which must be deleted first.
+     */
+    private static void deleteDirectory(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    deleteDirectory(file);
+                } else if (!file.delete()) {
+                    System.err.println("couldn't delete " + file);
+                }
+            }
+        }
+        if (!directory.delete()) {
+            System.err.println("couldn't delete " + directory);
+        }
+    }
+
+    public static void main(String[] args) throws IOException,
+            InterruptedException, InvocationTargetException {
+        int a = 0;
+        boolean disk = (args.length > 0) && args[0].equals("-disk");
+        if (disk) {
+            a++;
+        }
+        int iterations = (args.length > a) ? Integer.parseInt(args[a++]) : 5;
+        int[] sizes = {1000, 10000, 50000};
+        if (args.length > a) {
+            sizes = new int[args.length - a];
+            for (int i = 0; i < sizes.length; i++) {
+                sizes[i] = Integer.parseInt(args[a + i]);
+            }
+        }
+        ApplicationContext context = new ApplicationContext() {};
+        LocalStorage storage = context.getLocalStorage();
+        File directory = null;
+        if (disk) {
+            directory = Files.createTempDirectory("ssbench").toFile();
+            storage.setDirectory(directory);
+        } else {
+            storage.setLocalIO(new LocalStorage.MemoryLocalIO());
+        }
+
+        System.out.printf("%7s %6s %6s %7s %9s %9s %9s %8s %8s %8s %9s%n",
+                "comps", "fanout", "named", "entries", "capt ms", "write ms",
+                "rest ms", "capt KB", "write KB", "rest KB", "file B");
+        final int[] benchSizes = sizes;
+        IOException[] failure = new IOException[1];
+        SwingUtilities.invokeAndWait(() -> {
+            try {
+                for (int size : benchSizes) {
+                    for (int fanout : FANOUTS) {
+                        for (double named : NAMED) {
+                            run(context, iterations, size, fanout, named);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                failure[0] = e;
+            }
+        });
+        if (directory != null) {
+            deleteDirectory(directory);
+        }
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+    }
+}
@@ -37,6 +37,9 @@ package org.jdesktop.application;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.swing.SwingUtilities;
 
 /**
@@ -164,6 +167,13 @@ class AbstractBean {
         return pcs.getPropertyChangeListeners();
     }
 
+    /* Lets a subclass skip building the values of a property change that
+     * nobody is listening to.
+     */
+    boolean hasPropertyChangeListeners(String propertyName) {
+        return pcs.hasListeners(propertyName);
+    }
+
     /**
      * Called whenever the value of a bound property is set.
      * <p>
@@ -208,8 +218,30 @@ class AbstractBean {
         pcs.firePropertyChange(e);
     }
 
+    /* Events fired on other threads are queued, for all beans, and
+     * delivered on the EDT in the order they were fired by a single
+     * Runnable, rather than by one invokeLater per event. Events for
+     * properties nobody is listening to aren't queued at all.
+     * 
+     * An event fired on the EDT is delivered at once, unless earlier events
+     * are still queued or being delivered: then it's queued behind them, so
+     * that every listener sees the events in the order they were fired, 
+     * including those fired by a listener while it's handling an event.
+     */
     private static class EDTPropertyChangeSupport extends PropertyChangeSupport {
 
+        // Events delivered per Runnable, so that a flood can't starve input
+        private static final int MAX_BATCH = 1024;
+        private static final Queue<Runnable> pending
+                = new ConcurrentLinkedQueue<>();
+        private static final AtomicBoolean drainScheduled
+                = new AtomicBoolean(false);
+        /* The number of events, or drains, being delivered, which is more
+         * than one only when a listener runs a secondary event loop, for 
+         * example by showing a modal dialog. Only used on the EDT.
+         */
+        private static int deliveryDepth = 0;
+
         EDTPropertyChangeSupport(Object source) {
             super(source);
         }
@@ -221,13 +253,67 @@ class AbstractBean {
          */
         @Override
         public void firePropertyChange(final PropertyChangeEvent e) {
-            if (SwingUtilities.isEventDispatchThread()) {
-                super.firePropertyChange(e);
+            Object oldValue = e.getOldValue();
+            Object newValue = e.getNewValue();
+            if ((oldValue != null) && (newValue != null)
+                    && oldValue.equals(newValue)) {
+                return;
+            }
+            if (!hasListeners(e.getPropertyName())) {
+                return;
+            }
+            if (!SwingUtilities.isEventDispatchThread()) {
+                pending.add(() -> super.firePropertyChange(e));
+                scheduleDrain();
+            } else if ((deliveryDepth == 0) && pending.isEmpty()) {
+                deliveryDepth++;
+                try {
+                    super.firePropertyChange(e);
+                } finally {
+                    deliveryDepth--;
+                }
+                if (!pending.isEmpty()) {
+                    drain();  // events the listeners fired
+                }
             } else {
-                Runnable doFirePropertyChange = () -> {
-                    firePropertyChange(e);
-                };
-                SwingUtilities.invokeLater(doFirePropertyChange);
+                pending.add(() -> super.firePropertyChange(e));
+                if (deliveryDepth == 0) {
+                    drain();
+                } else {
+                    /* Delivered after the current event, by the code that's
+                     * delivering it, unless a modal dialog holds that up:
+                     * then by this drain.
+                     */
+                    scheduleDrain();
+                }
+            }
+        }
+
+        private static void scheduleDrain() {
+            if (drainScheduled.compareAndSet(false, true)) {
+                SwingUtilities.invokeLater(EDTPropertyChangeSupport::drain);
+            }
+        }
+
+        /* Runs on the EDT. The flag is cleared before the queue is read, so
+         * an event queued meanwhile is either delivered now or schedules
+         * another drain; it can't be stranded.
+         */
+        private static void drain() {
+            drainScheduled.set(false);
+            deliveryDepth++;
+            try {
+                Runnable fire;
+                for (int i = 0; (i < MAX_BATCH)
+                        && ((fire = pending.poll()) != null); i++) {
+                    fire.run();
+                }
+            } finally {
+                deliveryDepth--;
+                // Deliver the rest later, even if a listener threw
+                if (!pending.isEmpty()) {
+                    scheduleDrain();
+                }
             }
         }
     }
@@ -92,6 +92,25 @@ public @interface Action {
     String enabledProperty() default "";
     String selectedProperty() default  "";
     Task.BlockingScope block() default Task.BlockingScope.NONE;
+    /**
+     * The name of the {@link TaskService} that executes the Task returned by
+     * the action's method. The default, <code>""</code>, selects the 
+     * application's default <code>TaskService</code>.
+     * 
+     * @return the name of a TaskService registered with the ApplicationContext
+     * @see ApplicationContext#addTaskService(org.jdesktop.application.TaskService) 
+     */
+    String taskService() default "";
+    /**
+     * The {@link Task#setPriority priority} given to the Task returned by 
+     * the action's method, between {@link Task#MIN_PRIORITY} and {@link 
+     * Task#MAX_PRIORITY}. The default, 0, leaves the Task's priority as it 
+     * is.
+     * 
+     * @return the Task's priority, or 0
+     * @see PriorityTaskService
+     */
+    int priority() default 0;
 
     @Retention(RetentionPolicy.RUNTIME)
     @Target(ElementType.PARAMETER)
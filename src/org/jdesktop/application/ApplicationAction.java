@@ -39,6 +39,7 @@ import java.beans.PropertyChangeListener;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.AbstractAction;
 import javax.swing.ActionMap;
@@ -141,6 +142,8 @@ public class ApplicationAction extends AbstractAction {
     private final Method isSelectedMethod;  // Method object for is/getSelectedProperty
     private final Method setSelectedMethod; // Method object for setSelectedProperty
     private final Task.BlockingScope block;
+    private final String taskService;       // names the TaskService for Tasks, or null
+    private final int priority;             // for Tasks, or 0 to leave it alone
     private javax.swing.Action proxy = null;
     private Object proxySource = null;
     private PropertyChangeListener proxyPCL = null;
@@ -223,12 +226,59 @@ public class ApplicationAction extends AbstractAction {
             String enabledProperty,
             String selectedProperty,
             Task.BlockingScope block) {
+        this(appAM, resourceMap, baseName, actionMethod, enabledProperty,
+                selectedProperty, block, null, 0);
+    }
+
+    /**
+     * Construct an <code>ApplicationAction</code> that implements an
+     * <code>&#064;Action</code>, whose Tasks are executed by the named 
+     * {@link TaskService}, with the specified priority. See {@link #ApplicationAction(ApplicationActionMap,
+     * ResourceMap, String, Method, String, String, Task.BlockingScope) the
+     * constructor above} for the other parameters.
+     *
+     * @param appAM the ApplicationActionMap this action is being constructed
+     * for.
+     * @param resourceMap initial Action properties are loaded from this
+     * ResourceMap.
+     * @param baseName the name of the &#064;Action
+     * @param actionMethod unless a proxy is specified, actionPerformed calls
+     * this method.
+     * @param enabledProperty name of the enabled property.
+     * @param selectedProperty name of the selected property.
+     * @param block how much of the GUI to block while this action executes.
+     * @param taskService the name of the <code>TaskService</code> that 
+     * executes the action's Tasks, or null for the default 
+     * <code>TaskService</code>.
+     * @param priority the {@link Task#setPriority priority} of the action's
+     * Tasks, or 0 to leave the priority the Task sets for itself.
+     * @throws IllegalArgumentException if <code>priority</code> is neither 0
+     * nor between {@link Task#MIN_PRIORITY} and {@link Task#MAX_PRIORITY}
+     *
+     * @see ApplicationContext#getTaskService(java.lang.String) 
+     */
+    public ApplicationAction(ApplicationActionMap appAM,
+            ResourceMap resourceMap,
+            String baseName,
+            Method actionMethod,
+            String enabledProperty,
+            String selectedProperty,
+            Task.BlockingScope block,
+            String taskService,
+            int priority) {
         if (appAM == null) {
             throw new IllegalArgumentException("null appAM");
         }
         if (baseName == null) {
             throw new IllegalArgumentException("null baseName");
         }
+        // Checked now, rather than each time the action is performed
+        if ((priority != 0) && ((priority < Task.MIN_PRIORITY) 
+                || (priority > Task.MAX_PRIORITY))) {
+            String msg = String.format("invalid priority %d for action %s",
+                    priority, baseName);
+            throw new IllegalArgumentException(msg);
+        }
         this.appAM = appAM;
         this.resourceMap = resourceMap;
         this.actionName = baseName;
@@ -236,6 +286,8 @@ public class ApplicationAction extends AbstractAction {
         this.enabledProperty = enabledProperty;
         this.selectedProperty = selectedProperty;
         this.block = block;
+        this.taskService = taskService;
+        this.priority = priority;
 
         /* If enabledProperty is specified, lookup up the is/set methods and
 	 * verify that the former exists.
@@ -696,8 +748,20 @@ public class ApplicationAction extends AbstractAction {
             if (task.getInputBlocker() == null) {
                 task.setInputBlocker(createInputBlocker(task, actionEvent));
             }
+            if (priority != 0) {
+                task.setPriority(priority);
+            }
             ApplicationContext ctx = appAM.getContext();
-            ctx.getTaskService().execute(task);
+            TaskService ts = ctx.getTaskService();
+            if (taskService != null) {
+                ts = ctx.getTaskService(taskService);
+                if (ts == null) {
+                    logger.log(Level.WARNING, "no TaskService named {0}, "
+                            + "using the default", taskService);
+                    ts = ctx.getTaskService();
+                }
+            }
+            ts.execute(task);
         }
     }
 
@@ -173,9 +173,11 @@ public class ApplicationActionMap extends ActionMap {
                 String selectedProperty = aString(action.selectedProperty(), null);
                 String actionName = aString(action.name(), methodName);
                 Task.BlockingScope block = action.block();
+                String taskService = aString(action.taskService(), null);
                 ApplicationAction appAction
                         = new ApplicationAction(this, resourceMap, actionName, m,
-                                enabledProperty, selectedProperty, block);
+                                enabledProperty, selectedProperty, block, 
+                                taskService, action.priority());
                 putAction(actionName, appAction);
             }
         }
@@ -77,6 +77,7 @@ public class ApplicationContext extends AbstractBean {
     private Clipboard clipboard = null;
     private Throwable uncaughtException = null;
     private TaskMonitor taskMonitor = null;
+    private SessionAutosaver sessionAutosaver = null;
 
     protected ApplicationContext() {
         resourceManager = new ResourceManager(this);
@@ -490,4 +491,18 @@ public class ApplicationContext extends AbstractBean {
         }
         return taskMonitor;
     }
+
+    /**
+     * Returns a shared SessionAutosaver object, which saves the session state
+     * of the application's windows in the background as it changes. The
+     * autosaver is disabled until it's explicitly enabled.
+     *
+     * @return the shared SessionAutosaver object.
+     */
+    public final SessionAutosaver getSessionAutosaver() {
+        if (sessionAutosaver == null) {
+            sessionAutosaver = new SessionAutosaver(this);
+        }
+        return sessionAutosaver;
+    }
 }
@@ -0,0 +1,560 @@
+/*
+ * Copyright (C) 2021 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jdesktop.application;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A size-bounded cache of derived data, kept in the {@link LocalStorage}
+ * directory so that it survives from one run of the application to the next.
+ * It's intended for artifacts that are expensive to compute but can always be
+ * computed again, like scaled icons, parsed report templates or search
+ * indexes:
+ * <pre>
+ * DiskCache cache = context.getLocalStorage().getDiskCache();
+ * byte[] icon = cache.getOrCompute("icon/" + name + "@" + size,
+ *         () -&gt; scaleIcon(name, size));
+ * </pre>
+ * <p>
+ * Each value is stored in its own file, named for the SHA-256 hash of its key.
+ * The sizes of the values and the order in which they were last used are kept
+ * in an in-memory index, which is written to the <code>"cache.index"</code>
+ * file each time the cache is modified, and when {@link #flush()} is called.
+ * Value and index files are written under a temporary name and then renamed,
+ * so an interrupted write never leaves a partially written entry behind.
+ * Entry files are named <code>"cache-<i>hash</i>.bin"</code>, where the hash
+ * is 64 hexadecimal digits; the cache never touches other files in the
+ * directory. If the storage's {@link LocalStorage#setDirectory directory} or
+ * {@link LocalStorage#setLocalIO backend} changes, the cache's index is
+ * reloaded from the new location.</p>
+ * <p>
+ * When the total size of the stored values would exceed the {@link
+ * #getMaxSize() maxSize}, the least recently used values are discarded. The
+ * cache may be used by many threads: any number of them may read from the
+ * cache at once, while modifications are made by one thread at a time.</p>
+ *
+ * @see LocalStorage#getDiskCache()
+ *
+ * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
+ *
+ * @version 1.05
+ * @since 1.05
+ */
+public class DiskCache {
+
+    private static final Logger logger = Logger.getLogger(DiskCache.class.getName());
+    /** The name of the file in which the cache index is stored. */
+    public static final String INDEX_FILE_NAME = "cache.index";
+    private static final String ENTRY_PREFIX = "cache-";
+    private static final String ENTRY_SUFFIX = ".bin";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String INDEX_VERSION = "DiskCache 1";
+    /* The only names load() treats as its own: an entry, or an entry's
+     * temporary file. The directory is shared with the application's own
+     * files, so nothing else may be deleted as an orphan.
+     */
+    private static final Pattern ENTRY_FILE_NAME = Pattern.compile(
+            Pattern.quote(ENTRY_PREFIX) + "([0-9a-f]{64})"
+            + Pattern.quote(ENTRY_SUFFIX) + "(" + Pattern.quote(TEMP_SUFFIX)
+            + ")?");
+    private final LocalStorage storage;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, FutureTask<byte[]>> pending
+            = new ConcurrentHashMap<>();
+    private final AtomicLong clock = new AtomicLong();
+    private volatile long maxSize = 32L * 1024L * 1024L;
+    private long size = 0L;
+    private boolean loaded = false;
+
+    /* Tracks one cached value. The access tick is updated by readers while
+     * they hold the read lock, everything else only changes under the write
+     * lock.
+     */
+    private static class Entry {
+
+        private final String hash;
+        private final long length;
+        private volatile long lastAccess;
+
+        Entry(String hash, long length, long lastAccess) {
+            this.hash = hash;
+            this.length = length;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    /**
+     * Creates a cache whose files are kept in the directory of the specified
+     * <code>LocalStorage</code>. Applications normally use the cache returned
+     * by {@link LocalStorage#getDiskCache()} rather than creating their own.
+     *
+     * @param storage the local storage in which to keep the cache
+     */
+    public DiskCache(LocalStorage storage) {
+        if (storage == null) {
+            throw new IllegalArgumentException("null storage");
+        }
+        this.storage = storage;
+    }
+
+    /**
+     * Retrieves the maximum number of bytes of values that are kept on disk.
+     *
+     * @return the maximum size of the cache, in bytes
+     *
+     * @see #setMaxSize(long)
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Sets the maximum number of bytes of values that are kept on disk. If
+     * the cache is currently larger than <code>maxSize</code> the least
+     * recently used values are discarded. The default is 32 MiB.
+     *
+     * @param maxSize the maximum size of the cache, in bytes
+     * @throws IOException in the event an error occurs discarding values
+     */
+    public void setMaxSize(long maxSize) throws IOException {
+        if (maxSize < 0L) {
+            throw new IllegalArgumentException("invalid maxSize");
+        }
+        lock.writeLock().lock();
+        try {
+            this.maxSize = maxSize;
+            if (loaded && evict(0L)) {
+                writeIndex();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Retrieves the number of bytes currently used by the cached values.
+     *
+     * @return the size of the cache, in bytes
+     * @throws IOException in the event an error occurs reading the index
+     */
+    public long getSize() throws IOException {
+        lock.writeLock().lock();
+        try {
+            load();
+            return size;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Retrieves the value stored for <code>key</code>.
+     *
+     * @param key the key of the value
+     * @return the value, or <code>null</code> if it isn't in the cache
+     * @throws IOException in the event an error occurs reading the value
+     */
+    public byte[] get(String key) throws IOException {
+        checkKey(key);
+        String hash = hash(key);
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            Entry entry = entries.get(hash);
+            if (entry != null) {
+                try {
+                    byte[] value = read(entry);
+                    entry.lastAccess = clock.incrementAndGet();
+                    return value;
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "discarding unreadable cache "
+                            + "entry \"" + key + "\"", e);
+                }
+            } else {
+                return null;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        remove(key);
+        return null;
+    }
+
+    /**
+     * Stores <code>value</code> for <code>key</code>, replacing any value
+     * already stored for it. If the value is larger than the {@link
+     * #getMaxSize() maxSize} it isn't stored.
+     *
+     * @param key the key of the value
+     * @param value the value to store
+     * @throws IOException in the event an error occurs writing the value
+     */
+    public void put(String key, byte[] value) throws IOException {
+        checkKey(key);
+        if (value == null) {
+            throw new IllegalArgumentException("null value");
+        }
+        String hash = hash(key);
+        lock.writeLock().lock();
+        try {
+            load();
+            boolean modified = discard(hash);
+            if (value.length <= maxSize) {
+                evict(value.length);
+                String fileName = fileName(hash);
+                String tempFileName = fileName + TEMP_SUFFIX;
+                try (OutputStream ost = storage.openOutputFile(tempFileName)) {
+                    ost.write(value);
+                }
+                storage.renameFile(tempFileName, fileName);
+                Entry entry = new Entry(hash, storage.getFileLength(fileName),
+                        clock.incrementAndGet());
+                entries.put(hash, entry);
+                size += entry.length;
+                evict(0L);  // compression may have changed the length
+                modified = true;
+            }
+            if (modified) {
+                writeIndex();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Retrieves the value stored for <code>key</code>, or, if there isn't one,
+     * calls <code>computation</code> to compute the value and stores it. If
+     * several threads ask for the same missing value at the same time, it's
+     * only computed once.
+     * <p>
+     * The cache is only an optimization: if the value can't be read from or
+     * written to disk, the failure is logged and the value is computed
+     * anyway.</p>
+     *
+     * @param key the key of the value
+     * @param computation computes the value when it isn't in the cache
+     * @return the cached or computed value
+     * @throws Exception if <code>computation</code> fails
+     */
+    public byte[] getOrCompute(String key, Callable<byte[]> computation)
+            throws Exception {
+        checkKey(key);
+        if (computation == null) {
+            throw new IllegalArgumentException("null computation");
+        }
+        try {
+            byte[] value = get(key);
+            if (value != null) {
+                return value;
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "couldn't read cache entry \"" + key
+                    + "\"", e);
+        }
+        FutureTask<byte[]> task = new FutureTask<>(() -> {
+            byte[] value = computation.call();
+            if (value != null) {
+                try {
+                    put(key, value);
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "couldn't write cache entry \""
+                            + key + "\"", e);
+                }
+            }
+            return value;
+        });
+        FutureTask<byte[]> running = pending.putIfAbsent(key, task);
+        if (running == null) {
+            running = task;
+            try {
+                task.run();
+            } finally {
+                pending.remove(key, task);
+            }
+        }
+        try {
+            return running.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw (Error) cause;
+        }
+    }
+
+    /**
+     * Removes the value stored for <code>key</code>, if there is one.
+     *
+     * @param key the key of the value
+     * @return <code>true</code> if a value was removed
+     * @throws IOException in the event an error occurs deleting the value
+     */
+    public boolean remove(String key) throws IOException {
+        checkKey(key);
+        String hash = hash(key);
+        lock.writeLock().lock();
+        try {
+            load();
+            boolean removed = discard(hash);
+            if (removed) {
+                writeIndex();
+            }
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes all of the cached values.
+     *
+     * @throws IOException in the event an error occurs deleting the values
+     */
+    public void clear() throws IOException {
+        lock.writeLock().lock();
+        try {
+            load();
+            for (String hash : new ArrayList<>(entries.keySet())) {
+                discard(hash);
+            }
+            writeIndex();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Writes the index, including the order in which the values were last
+     * used, to disk. Reading a value doesn't write the index, so an
+     * application should call this method before it exits if it wants the
+     * next run to discard values in least recently used order.
+     *
+     * @throws IOException in the event an error occurs writing the index
+     */
+    public void flush() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (loaded) {
+                writeIndex();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /* Called by LocalStorage, which leaves the cache's files to the cache's
+     * own size bound rather than evicting them behind its back.
+     */
+    static boolean isCacheFile(String fileName) {
+        return fileName.equals(INDEX_FILE_NAME) 
+                || fileName.equals(INDEX_FILE_NAME + TEMP_SUFFIX)
+                || ENTRY_FILE_NAME.matcher(fileName).matches();
+    }
+
+    /* Called by LocalStorage when its directory or backend changes, so that
+     * the index is reloaded from the new location when it's next needed.
+     */
+    void invalidate() {
+        lock.writeLock().lock();
+        try {
+            entries.clear();
+            size = 0L;
+            loaded = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void checkKey(String key) {
+        if (key == null) {
+            throw new IllegalArgumentException("null key");
+        }
+    }
+
+    private static String hash(String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] bytes = digest.digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(bytes.length * 2);
+            for (byte b : bytes) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+                sb.append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String fileName(String hash) {
+        return ENTRY_PREFIX + hash + ENTRY_SUFFIX;
+    }
+
+    private byte[] read(Entry entry) throws IOException {
+        ByteArrayOutputStream bst = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        try (InputStream ist = storage.openInputFile(fileName(entry.hash))) {
+            int n;
+            while ((n = ist.read(buffer)) != -1) {
+                bst.write(buffer, 0, n);
+            }
+        }
+        return bst.toByteArray();
+    }
+
+    private void ensureLoaded() throws IOException {
+        if (!loaded) {
+            lock.writeLock().lock();
+            try {
+                load();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /* Must be called with the write lock held. Reads the index, dropping
+     * entries whose files are missing, and deletes the entry files that
+     * aren't in the index, which are left behind if the application exits
+     * between writing a value and writing the index.
+     */
+    private void load() throws IOException {
+        if (loaded) {
+            return;
+        }
+        entries.clear();
+        size = 0L;
+        long maxTick = 0L;
+        List<String> fileNames = List.of(storage.getFileNames());
+        if (fileNames.contains(INDEX_FILE_NAME)) {
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(storage.openInputFile(INDEX_FILE_NAME),
+                            StandardCharsets.UTF_8))) {
+                String line = reader.readLine();
+                if (INDEX_VERSION.equals(line)) {
+                    while ((line = reader.readLine()) != null) {
+                        String[] fields = line.split(" ");
+                        if (fields.length != 3) {
+                            continue;
+                        }
+                        String hash = fields[0];
+                        if (!fileNames.contains(fileName(hash))) {
+                            continue;
+                        }
+                        long length = Long.parseLong(fields[1]);
+                        long tick = Long.parseLong(fields[2]);
+                        entries.put(hash, new Entry(hash, length, tick));
+                        size += length;
+                        maxTick = Math.max(maxTick, tick);
+                    }
+                }
+            } catch (IOException | NumberFormatException e) {
+                logger.log(Level.WARNING, "discarding unreadable cache index",
+                        e);
+                entries.clear();
+                size = 0L;
+            }
+        }
+        clock.set(maxTick);
+        for (String fileName : fileNames) {
+            Matcher matcher = ENTRY_FILE_NAME.matcher(fileName);
+            if (!matcher.matches()) {
+                continue;
+            }
+            boolean orphan = (matcher.group(2) != null)
+                    || !entries.containsKey(matcher.group(1));
+            if (orphan) {
+                storage.deleteFile(fileName);
+            }
+        }
+        loaded = true;
+        evict(0L);
+    }
+
+    /* Must be called with the write lock held. */
+    private boolean discard(String hash) throws IOException {
+        Entry entry = entries.remove(hash);
+        if (entry == null) {
+            return false;
+        }
+        size -= entry.length;
+        storage.deleteFile(fileName(hash));
+        return true;
+    }
+
+    /* Must be called with the write lock held. Discards least recently used
+     * values until nBytes more will fit.
+     */
+    private boolean evict(long nBytes) throws IOException {
+        if (size + nBytes <= maxSize) {
+            return false;
+        }
+        List<Entry> lru = new ArrayList<>(entries.values());
+        lru.sort(Comparator.comparingLong(e -> e.lastAccess));
+        for (Entry entry : lru) {
+            if (size + nBytes <= maxSize) {
+                break;
+            }
+            discard(entry.hash);
+        }
+        return true;
+    }
+
+    /* Must be called with the write lock held. */
+    private void writeIndex() throws IOException {
+        String tempFileName = INDEX_FILE_NAME + TEMP_SUFFIX;
+        try (Writer writer = new OutputStreamWriter(
+                storage.openOutputFile(tempFileName), StandardCharsets.UTF_8)) {
+            writer.write(INDEX_VERSION);
+            writer.write('\n');
+            for (Entry entry : entries.values()) {
+                writer.write(entry.hash + " " + entry.length + " "
+                        + entry.lastAccess + "\n");
+            }
+        }
+        storage.renameFile(tempFileName, INDEX_FILE_NAME);
+    }
+}
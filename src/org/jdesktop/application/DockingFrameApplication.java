@@ -37,6 +37,7 @@ import java.awt.BorderLayout;
 import java.awt.Component;
 import java.awt.Container;
 import java.awt.Frame;
+import java.awt.Rectangle;
 import java.awt.Window;
 import java.awt.event.ComponentEvent;
 import java.awt.event.ComponentListener;
@@ -124,6 +125,7 @@ public abstract class DockingFrameApplication extends Application {
 
     private static final Logger logger = Logger.getLogger(DockingFrameApplication.class.getName());
     private ResourceMap appResources = null;
+    private String sessionFile = null;
 
     /**
      * Return the JFrame used to show this application.
@@ -177,12 +179,50 @@ public abstract class DockingFrameApplication extends Application {
         getMainView().setFrame(mainFrame);
     }
 
+    /**
+     * Returns the name of the <code>LocalStorage</code> file that holds the 
+     * session state of all of the application's windows, or null if each
+     * window's state is stored in a file of its own.
+     *
+     * @return the value of the sessionFile property
+     * 
+     * @see #setSessionFile(java.lang.String) 
+     */
+    public String getSessionFile() {
+        return sessionFile;
+    }
+
+    /**
+     * Stores the session state of all of the application's windows in one
+     * <code>LocalStorage</code> file, rather than in a 
+     * <code><i>windowName</i>.session.xml</code> file per window. When the
+     * application shuts down, the state of all of the visible windows is
+     * then saved with a single write, and at startup the file is read once
+     * however many windows are restored from it. The default is null.
+     * <p>
+     * This property should be set before the main frame is shown, and is 
+     * bound.</p>
+     *
+     * @param sessionFile the session file name, or null for one file per 
+     *          window
+     * 
+     * @see SessionStorage#save(java.util.Collection, java.lang.String) 
+     */
+    public void setSessionFile(String sessionFile) {
+        String oldValue = this.sessionFile;
+        this.sessionFile = sessionFile;
+        firePropertyChange("sessionFile", oldValue, this.sessionFile);
+    }
+
     private String sessionFilename(Window window) {
         if (window == null) {
             return null;
         } else {
             String name = window.getName();
-            return (name == null) ? null : name + ".session.xml";
+            if (name == null) {
+                return null;
+            }
+            return (sessionFile != null) ? sessionFile : name + ".session.xml";
         }
     }
 
@@ -235,25 +275,16 @@ public abstract class DockingFrameApplication extends Application {
         if (root instanceof JFrame) {
             root.addComponentListener(new FrameBoundsListener());
         }
-        // If the window's bounds don't appear to have been set, do it
         if (root instanceof Window) {
             Window window = (Window) root;
-            if (!root.isValid() || (root.getWidth() == 0) 
-                    || (root.getHeight() == 0)) {
-                window.pack();
-            }
-            if (!window.isLocationByPlatform() && (root.getX() == 0) 
-                    && (root.getY() == 0)) {
-                Component owner = window.getOwner();
-                if (owner == null) {
-                    owner = (window != mainFrame) ? mainFrame : null;
-                }
-                window.setLocationRelativeTo(owner);  // center the window
-            }
-        }
-        // Restore session state
-        if (root instanceof Window) {
-            String filename = sessionFilename((Window) root);
+            /* Restore session state before the window is packed and shown.
+             * The window isn't displayable yet, so restoring its bounds, 
+             * divider locations, etc. only invalidates the hierarchy, and it's
+             * laid out once, by pack() or setVisible(), with the restored
+             * values in place.
+             */
+            Rectangle bounds = window.getBounds();
+            String filename = sessionFilename(window);
             if (filename != null) {
                 try {
                     getContext().getSessionStorage().restore(root, filename);
@@ -262,6 +293,22 @@ public abstract class DockingFrameApplication extends Application {
                             filename);
                     logger.log(Level.WARNING, msg, e);
                 }
+                getContext().getSessionAutosaver().watch(window, filename);
+            }
+            // If the window's bounds don't appear to have been set, do it
+            if (bounds.equals(window.getBounds())) {
+                if (!root.isValid() || (root.getWidth() == 0) 
+                        || (root.getHeight() == 0)) {
+                    window.pack();
+                }
+                if (!window.isLocationByPlatform() && (root.getX() == 0) 
+                        && (root.getY() == 0)) {
+                    Component owner = window.getOwner();
+                    if (owner == null) {
+                        owner = (window != mainFrame) ? mainFrame : null;
+                    }
+                    window.setLocationRelativeTo(owner);  // center the window
+                }
             }
         }
     }
@@ -357,6 +404,18 @@ public abstract class DockingFrameApplication extends Application {
         }
     }
 
+    /* Secondary windows are saved each time they're hidden, so the EDT only
+     * captures their state and leaves writing it to the default TaskService.
+     */
+    private void saveSessionInBackground(Window window) {
+        String filename = sessionFilename(window);
+        if (filename != null) {
+            SessionStorage sessionStorage = getContext().getSessionStorage();
+            getContext().getTaskService().execute(
+                    sessionStorage.createSaveTask(window, filename));
+        }
+    }
+
     private boolean isVisibleWindow(Window w) {
         return w.isVisible()
                 && ((w instanceof JFrame) || (w instanceof JDialog) 
@@ -412,10 +471,31 @@ public abstract class DockingFrameApplication extends Application {
      */
     @Override
     protected void shutdown() {
-        saveSession(getMainFrame());
-        getVisibleSecondaryWindows().forEach(window -> {
-            saveSession(window);
-        });
+        getContext().getSessionAutosaver().stop();
+        try {
+            getContext().getSessionStorage().flush();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "couldn't save sesssion", e);
+        }
+        if (sessionFile == null) {
+            saveSession(getMainFrame());
+            getVisibleSecondaryWindows().forEach(window -> {
+                saveSession(window);
+            });
+        } else {
+            List<Window> windows = new ArrayList<>();
+            if (sessionFilename(getMainFrame()) != null) {
+                windows.add(getMainFrame());
+            }
+            getVisibleSecondaryWindows().stream()
+                    .filter(window -> sessionFilename(window) != null)
+                    .forEach(windows::add);
+            try {
+                getContext().getSessionStorage().save(windows, sessionFile);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "couldn't save sesssion", e);
+            }
+        }
     }
 
     private class MainFrameListener extends WindowAdapter {
@@ -442,7 +522,7 @@ public abstract class DockingFrameApplication extends Application {
                 if (e.getSource() instanceof Window) {
                     Window secondaryWindow = (Window) e.getSource();
                     if (!secondaryWindow.isShowing()) {
-                        saveSession(secondaryWindow);
+                        saveSessionInBackground(secondaryWindow);
                     }
                 }
             }
@@ -33,29 +33,70 @@
  */
 package org.jdesktop.application;
 
-import java.awt.Rectangle;
-import java.beans.DefaultPersistenceDelegate;
-import java.beans.Encoder;
 import java.beans.ExceptionListener;
-import java.beans.Expression;
 import java.beans.XMLDecoder;
 import java.beans.XMLEncoder;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
-import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.io.PushbackInputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Checksum;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
 //import javax.jnlp.BasicService;
 //import javax.jnlp.FileContents;
 //import javax.jnlp.PersistenceService;
@@ -64,6 +105,16 @@ import java.util.logging.Logger;
 
 /**
  * Access to per application, per user, local file storage.
+ * <p>
+ * {@link #save save}, {@link #load load}, {@link #deleteFile deleteFile}, 
+ * {@link #renameFile renameFile}, {@link #copy copy} and transactions lock the
+ * files they use, so they may be called from any thread, and by several 
+ * processes that share the same directory. Operations that only read a file 
+ * share its lock, operations that change it hold the lock exclusively, and 
+ * operations on unrelated files generally don't wait for each other. The 
+ * streams and channels returned by {@link #openInputFile openInputFile}, 
+ * {@link #openOutputFile openOutputFile} and {@link #openChannel openChannel}
+ * aren't locked.</p>
  *
  * @see ApplicationContext#getLocalStorage() 
  * @see SessionStorage
@@ -79,7 +130,14 @@ public class LocalStorage extends AbstractBean {
     private static final Logger logger = Logger.getLogger(LocalStorage.class.getName());
     private final ApplicationContext context;
     private long storageLimit = -1L;
+    private long storageUsed = -1L;
+    private final Object quotaLock = new Object();
+    private EvictionPolicy evictionPolicy = null;
+    private volatile boolean integrityChecked = false;
+    private final List<CompressionRule> compressionRules 
+            = new CopyOnWriteArrayList<>();
     private LocalIO localIO = null;
+    private DiskCache diskCache = null;
     private final File unspecifiedFile = new File("unspecified");
     private File directory = unspecifiedFile;
 
@@ -88,172 +146,1997 @@ public class LocalStorage extends AbstractBean {
             throw new IllegalArgumentException("null context");
         }
         this.context = context;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            stripes[i] = new Stripe(i);
+        }
+    }
+
+    /**
+     * Retrieves the <code>ApplicationContext</code> under which the current
+     * <code>Application</code> is running. The <code>ApplicationContext</code>
+     * provides access to various information about the application, including
+     * its resources and storage system.
+     * 
+     * @return the context under which the application is running
+     */
+    protected final ApplicationContext getContext() {
+        return context;
+    }
+
+    private void checkFileName(String fileName) {
+        if (fileName == null) {
+            throw new IllegalArgumentException("null fileName");
+        }
+    }
+
+    /**
+     * Retrieves a <code>java.io.InputStream</code> object from which file data
+     * may be read.
+     * 
+     * @param fileName name of the file
+     * @return an <code>InputStream</code> through which the file contents may
+     *          be read
+     * @throws IOException in the event an error occurs accessing the file
+     * 
+     * @see java.io.InputStream
+     */
+    public InputStream openInputFile(String fileName) throws IOException {
+        checkFileName(fileName);
+        return openDecodedInputStream(getLocalIO().openInputFile(fileName), 
+                fileName);
+    }
+
+    /**
+     * Retrieves a <code>java.io.OutputStream</code> object to which file data
+     * may be written.
+     * 
+     * @param fileName name of the file
+     * @return an <code>OutputStream</code> through which the file contents may
+     *          be written
+     * @throws IOException in the event an error occurs accessing the file
+     * 
+     * @see java.io.OutputStream
+     * @see #setCompression(java.lang.String, Compression) 
+     */
+    public OutputStream openOutputFile(String fileName) throws IOException {
+        checkFileName(fileName);
+        return openEncodedOutputStream(openAccountedOutputFile(fileName, 0L), 
+                getCompression(fileName), integrityChecked);
+    }
+
+    /**
+     * Provides a means by which the file specified by <code>fileName</code> may
+     * be deleted from the underlying disk.
+     * 
+     * @param fileName the name of the file to delete
+     * @return <code>true</code> if the file is successfully deleted; 
+     *          <code>false</code> otherwise
+     * @throws IOException in the event an error occurs accessing the file
+     * 
+     * @see java.io.File#delete() 
+     */
+    public boolean deleteFile(String fileName) throws IOException {
+        checkFileName(fileName);
+        FileLocks locks = lockFiles(null, List.of(fileName));
+        try (locks) {
+            return removeFile(fileName);
+        }
+    }
+
+    /* Deletes fileName, and the previous version of it replaceFile may have
+     * kept, so that load can't roll a deleted file back to that. Must be 
+     * called holding the exclusive lock on fileName.
+     */
+    private boolean removeFile(String fileName) throws IOException {
+        synchronized (quotaLock) {
+            removeAccountedFile(fileName + BACKUP_SUFFIX);
+            return removeAccountedFile(fileName);
+        }
+    }
+
+    /* Must be called holding the quotaLock. */
+    private boolean removeAccountedFile(String fileName) throws IOException {
+        LocalIO io = getLocalIO();
+        long length = (storageUsed == -1L) ? 0L : io.fileLength(fileName);
+        boolean deleted = io.deleteFile(fileName);
+        if (deleted) {
+            releaseStorage(length);
+        }
+        return deleted;
+    }
+
+    /**
+     * Renames the file specified by <code>fromFileName</code> to <code>
+     * toFileName</code>, replacing <code>toFileName</code> if it exists. Where
+     * the underlying storage supports it the rename is atomic, so a file can 
+     * be written under a temporary name and then moved into place without 
+     * readers ever seeing it partially written.
+     * 
+     * @param fromFileName the current name of the file
+     * @param toFileName the new name of the file
+     * @throws IOException in the event an error occurs renaming the file
+     */
+    public void renameFile(String fromFileName, String toFileName) 
+            throws IOException {
+        checkFileName(fromFileName);
+        checkFileName(toFileName);
+        if (fromFileName.equals(toFileName)) {
+            return;
+        }
+        FileLocks locks = lockFiles(null, 
+                List.of(fromFileName, toFileName));
+        try (locks) {
+            moveFile(fromFileName, toFileName);
+        }
+    }
+
+    private void moveFile(String fromFileName, String toFileName) 
+            throws IOException {
+        LocalIO io = getLocalIO();
+        synchronized (quotaLock) {
+            long length = (storageUsed == -1L) ? 0L : io.fileLength(toFileName);
+            io.renameFile(fromFileName, toFileName);
+            releaseStorage(length);
+        }
+    }
+
+    /**
+     * Retrieves the cache of derived data, such as scaled icons or parsed
+     * templates, that is kept in this <code>LocalStorage</code>'s {@link 
+     * #getDirectory() directory}, so that it survives from one run of the
+     * application to the next.
+     * 
+     * @return the disk cache for the current directory
+     * 
+     * @see DiskCache#getOrCompute(java.lang.String, 
+     *          java.util.concurrent.Callable) 
+     */
+    public synchronized DiskCache getDiskCache() {
+        if (diskCache == null) {
+            diskCache = new DiskCache(this);
+        }
+        return diskCache;
+    }
+
+    /* The cache is told outside of this object's lock, which its methods
+     * take, indirectly, while they hold the cache's own lock.
+     */
+    private void invalidateDiskCache() {
+        DiskCache cache;
+        synchronized (this) {
+            cache = diskCache;
+        }
+        if (cache != null) {
+            cache.invalidate();
+        }
+    }
+
+    /**
+     * Retrieves the names of all of the files currently held in local storage.
+     * 
+     * @return the names of the stored files, never <code>null</code>
+     * @throws IOException in the event an error occurs accessing the storage
+     */
+    public String[] getFileNames() throws IOException {
+        return getLocalIO().listFiles();
+    }
+
+    /**
+     * Retrieves the length, in bytes, of the file specified by <code>fileName
+     * </code>.
+     * 
+     * @param fileName name of the file
+     * @return the length of the file, or <code>0L</code> if it does not exist
+     * @throws IOException in the event an error occurs accessing the file
+     */
+    public long getFileLength(String fileName) throws IOException {
+        checkFileName(fileName);
+        return getLocalIO().fileLength(fileName);
+    }
+
+    /**
+     * Retrieves the time the file specified by <code>fileName</code> was last
+     * modified, in milliseconds since the epoch.
+     * 
+     * @param fileName name of the file
+     * @return the last modification time, or <code>0L</code> if the file does
+     *          not exist
+     * @throws IOException in the event an error occurs accessing the file
+     */
+    public long getLastModified(String fileName) throws IOException {
+        checkFileName(fileName);
+        return getLocalIO().lastModified(fileName);
+    }
+
+    /**
+     * Opens a channel to the file specified by <code>fileName</code>, with the
+     * specified {@link StandardOpenOption options}. If no options are given
+     * the file is opened for reading. Unlike the streams returned by {@link 
+     * #openInputFile openInputFile} and {@link #openOutputFile openOutputFile}
+     * a channel provides random access to the file's raw contents: {@link 
+     * #setCompression(java.lang.String, Compression) compression} isn't 
+     * applied.
+     * <p>
+     * For files on disk the channel is a {@link FileChannel}, unless it has
+     * been opened for writing while a {@link #getStorageLimit() storage limit}
+     * is in effect, in which case writes that grow the file are checked
+     * against the limit.</p>
+     * 
+     * @param fileName name of the file
+     * @param options how the file is opened
+     * @return a channel to the file
+     * @throws IOException in the event an error occurs opening the file
+     * 
+     * @see #map(java.lang.String, java.nio.channels.FileChannel.MapMode) 
+     */
+    public SeekableByteChannel openChannel(String fileName, 
+            OpenOption... options) throws IOException {
+        checkFileName(fileName);
+        Set<OpenOption> optionSet = new HashSet<>(Arrays.asList(options));
+        if (optionSet.isEmpty()) {
+            optionSet.add(StandardOpenOption.READ);
+        }
+        LocalIO io = getLocalIO();
+        boolean writable = optionSet.contains(StandardOpenOption.WRITE) 
+                || optionSet.contains(StandardOpenOption.APPEND);
+        synchronized (quotaLock) {
+            if (!writable || !isStorageAccounted()) {
+                return io.openChannel(fileName, optionSet);
+            }
+            long oldLength = io.fileLength(fileName);
+            SeekableByteChannel channel = io.openChannel(fileName, optionSet);
+            // TRUNCATE_EXISTING may have released some space
+            releaseStorage(oldLength - channel.size());
+            return new QuotaByteChannel(channel, fileName);
+        }
+    }
+
+    /**
+     * Maps the entire contents of the file specified by <code>fileName</code>
+     * into memory. For files on disk the returned buffer is a {@link 
+     * java.nio.MappedByteBuffer}, so large files can be read, and shared 
+     * between threads, without copying them onto the heap. The file must 
+     * already exist, and a <code>READ_WRITE</code> mapping cannot change its
+     * length.
+     * 
+     * @param fileName name of the file
+     * @param mode <code>READ_ONLY</code>, <code>READ_WRITE</code> or <code>
+     *          PRIVATE</code> (copy-on-write)
+     * @return a buffer whose contents are the file's contents
+     * @throws IOException in the event an error occurs mapping the file
+     * 
+     * @see FileChannel#map(java.nio.channels.FileChannel.MapMode, long, long) 
+     */
+    public ByteBuffer map(String fileName, FileChannel.MapMode mode) 
+            throws IOException {
+        checkFileName(fileName);
+        if (mode == null) {
+            throw new IllegalArgumentException("null mode");
+        }
+        return getLocalIO().map(fileName, mode);
+    }
+
+    /**
+     * Copies the raw contents of one file to another, replacing the contents
+     * of <code>toFileName</code> if it exists. For files on disk the bytes are
+     * moved with {@link FileChannel#transferTo transferTo}, which lets the 
+     * operating system copy them without passing them through the heap.
+     * 
+     * @param fromFileName name of the file to copy
+     * @param toFileName name of the copy
+     * @return the number of bytes copied
+     * @throws IOException in the event an error occurs copying the file, or 
+     *          the copy would exceed the storage limit
+     */
+    public long copy(String fromFileName, String toFileName) 
+            throws IOException {
+        checkFileName(fromFileName);
+        checkFileName(toFileName);
+        LocalIO io = getLocalIO();
+        FileLocks locks = lockFiles(List.of(fromFileName), 
+                List.of(toFileName));
+        try (locks) {
+            long reserved = 0L;
+            synchronized (quotaLock) {
+                if (isStorageAccounted()) {
+                    reserved = io.fileLength(fromFileName) 
+                            - io.fileLength(toFileName);
+                    reserveStorage(io, toFileName, reserved);
+                }
+            }
+            try {
+                return io.copy(fromFileName, toFileName);
+            } catch (IOException e) {
+                releaseStorage(reserved);
+                throw e;
+            }
+        }
+    }
+
+    /* If an exception occurs in the XMLEncoder/Decoder, we want
+     * to throw an IOException.  The exceptionThrow listener method
+     * doesn't throw a checked exception so we just set a flag
+     * here and check it when the encode/decode operation finishes
+     */
+    private static class AbortExceptionListener implements ExceptionListener {
+
+        public Exception exception = null;
+
+        @Override
+        public void exceptionThrown(Exception e) {
+            if (exception == null) {
+                exception = e;
+            }
+        }
+    }
+
+    public void save(Object bean, final String fileName) throws IOException {
+        recoverJournal();
+        ByteArrayOutputStream bst = encode(bean, fileName);
+        FileLocks locks = lockFiles(null, List.of(fileName));
+        try (locks) {
+            if (integrityChecked) {
+                replaceFile(fileName, bst.toByteArray());
+                return;
+            }
+            /* Reserve the space up front, so that a save that would exceed 
+             * the storage limit fails before the current version is 
+             * truncated.
+             */
+            try (OutputStream ost = openAccountedOutputFile(fileName, 
+                    bst.size())) {
+                bst.writeTo(ost);
+            }
+        }
+    }
+
+    /* Returns the bytes that save would write for bean: its XML encoding, 
+     * compressed as specified for fileName and framed with a checksum if
+     * integrity checking is on.
+     */
+    private ByteArrayOutputStream encode(Object bean, String fileName) 
+            throws IOException {
+        AbortExceptionListener el = new AbortExceptionListener();
+        XMLEncoder e = null;
+        /* Buffer the XMLEncoder's output so that decoding errors don't
+	 * cause us to trash the current version of the specified file.
+         */
+        ByteArrayOutputStream bst = new ByteArrayOutputStream();
+        try {
+            e = new XMLEncoder(bst);
+            e.setExceptionListener(el);
+            e.writeObject(bean);
+        } finally {
+            if (e != null) {
+                e.close();
+            }
+        }
+        if (el.exception != null) {
+            throw new IOException("save failed \"" + fileName + "\"", 
+                    el.exception);
+        }
+        /* Compress in memory too, so that we know exactly how many bytes 
+         * will reach the file.
+         */
+        Compression compression = getCompression(fileName);
+        boolean framed = integrityChecked;
+        if ((compression != Compression.NONE) || framed) {
+            ByteArrayOutputStream cst = new ByteArrayOutputStream(
+                    bst.size() / 4);
+            try (OutputStream ost = openEncodedOutputStream(cst, compression, 
+                    framed)) {
+                bst.writeTo(ost);
+            }
+            bst = cst;
+        }
+        return bst;
+    }
+
+    public Object load(String fileName) throws IOException {
+        recoverJournal();
+        byte[] content = readVerified(fileName);
+        if (content == null) {
+            return null;
+        }
+        AbortExceptionListener el = new AbortExceptionListener();
+        try (XMLDecoder d = new XMLDecoder(new ByteArrayInputStream(content))) {
+            d.setExceptionListener(el);
+            Object bean = d.readObject();
+            if (el.exception != null) {
+                throw new IOException("load failed \"" + fileName + "\"", 
+                        el.exception);
+            }
+            return bean;
+        }
+    }
+
+    /* Reads all of the (decoded) content of fileName, which verifies its 
+     * checksum if it was written with one. XMLDecoder stops reading at the
+     * end of the document, so it can't be relied on to reach the checksum.
+     * A file that fails verification is renamed with a ".corrupt" suffix and 
+     * replaced by its previous version, if one was kept. Returns null if 
+     * the file doesn't exist, or has no intact version.
+     */
+    private byte[] readVerified(String fileName) throws IOException {
+        FileLocks sharedLocks = lockFiles(List.of(fileName), null);
+        try (sharedLocks) {
+            return readFile(fileName, false);
+        } catch (CorruptFileException e) {
+            // Quarantined below
+        }
+        /* Quarantining and rolling back modify the files, so they need the 
+         * exclusive lock. Another reader may have already done it.
+         */
+        FileLocks exclusiveLocks = lockFiles(null, List.of(fileName));
+        try (exclusiveLocks) {
+            try {
+                return readFile(fileName, true);
+            } catch (CorruptFileException e) {
+                if (!rollBack(fileName)) {
+                    return null;
+                }
+            }
+            try {
+                return readFile(fileName, true);
+            } catch (CorruptFileException e) {
+                return null;  // the previous version was corrupt too
+            }
+        }
+    }
+
+    /* Returns null if fileName doesn't exist, and throws a 
+     * CorruptFileException if it fails verification. Other errors reading 
+     * it, like being denied access, are thrown as they are, and leave it 
+     * where it is. Must be called holding a lock on fileName, the exclusive 
+     * lock if a corrupt file is to be quarantined.
+     */
+    private byte[] readFile(String fileName, boolean quarantine) 
+            throws IOException {
+        try {
+            InputStream ist;
+            try {
+                ist = openInputFile(fileName);
+            } catch (IOException e) {
+                if (isNoSuchFile(e)) {
+                    return null;
+                }
+                throw e;
+            }
+            try (InputStream in = ist) {
+                return in.readAllBytes();
+            }
+        } catch (CorruptFileException | ZipException e) {
+            // The checksum, or zlib's own check of deflated data, failed
+            if (quarantine) {
+                logger.log(Level.WARNING, "quarantining corrupt file \"" 
+                        + fileName + "\"", e);
+                moveFile(fileName, fileName + CORRUPT_SUFFIX);
+            }
+            throw (e instanceof CorruptFileException) 
+                    ? (CorruptFileException) e 
+                    : new CorruptFileException("\"" + fileName 
+                            + "\" is corrupt", e);
+        }
+    }
+
+    /* LocalIO implementations report a missing file with an IOException 
+     * caused by a NoSuchFileException or, like FileInputStream, a 
+     * FileNotFoundException.
+     */
+    private static boolean isNoSuchFile(IOException e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if ((t instanceof NoSuchFileException) 
+                    || (t instanceof FileNotFoundException)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /* Restores the previous version of fileName kept by replaceFile. Must be
+     * called holding the exclusive lock on fileName.
+     */
+    private boolean rollBack(String fileName) throws IOException {
+        String backupFileName = fileName + BACKUP_SUFFIX;
+        if (getLocalIO().fileLength(backupFileName) <= 0L) {
+            return false;
+        }
+        logger.log(Level.WARNING, "restoring previous version of \"{0}\"", 
+                fileName);
+        moveFile(backupFileName, fileName);
+        return true;
+    }
+
+    /* Writes content to a temporary file and renames it over fileName. If
+     * integrity checking is on, the version being replaced is kept, so that
+     * load can roll back to it if the new version turns out to be corrupt.
+     * Must be called holding the exclusive lock on fileName.
+     */
+    private void replaceFile(String fileName, byte[] content) 
+            throws IOException {
+        String tempFileName = fileName + TEMP_SUFFIX;
+        try (OutputStream ost = openAccountedOutputFile(tempFileName, 
+                content.length)) {
+            ost.write(content);
+        }
+        if (integrityChecked && (getLocalIO().fileLength(fileName) > 0L)) {
+            moveFile(fileName, fileName + BACKUP_SUFFIX);
+        }
+        moveFile(tempFileName, fileName);
+    }
+
+    private void closeStream(Closeable st, String fileName) throws IOException {
+        if (st != null) {
+            try {
+                st.close();
+            } catch (java.io.IOException e) {
+                throw new IOException("close failed \"" + fileName + "\"", e);
+            }
+        }
+    }
+
+    /**
+     * Begins a transaction through which several objects can be saved, and
+     * files deleted, as a unit: after a crash either all of the transaction's
+     * changes are visible or none of them are.
+     * <pre>
+     * LocalStorage.Transaction tx = localStorage.beginTransaction();
+     * tx.save(preferences, "preferences.xml");
+     * tx.save(recentFiles, "recent.xml");
+     * tx.commit();
+     * </pre>
+     * 
+     * @return a new transaction
+     * @throws IOException in the event an error occurs recovering an earlier
+     *          transaction
+     * 
+     * @see Transaction#commit() 
+     */
+    public Transaction beginTransaction() throws IOException {
+        recoverJournal();
+        return new Transaction();
+    }
+
+    /**
+     * A set of changes to local storage that are committed together. Objects
+     * are encoded as they're staged, exactly as {@link LocalStorage#save 
+     * save} would encode them, but nothing is written until {@link #commit() 
+     * commit}.
+     * <p>
+     * Committing writes all of the staged changes to a single journal file 
+     * and forces it to disk, the only <code>fsync</code> in the batch. 
+     * Renaming the journal to <code>"localstorage.journal"</code> is the 
+     * commit point. The changes are then applied, each file being written 
+     * under a temporary name and renamed into place, and the journal is 
+     * deleted. If the application exits before that finishes, the journal is
+     * replayed the next time local storage is used.</p>
+     * <p>
+     * Transactions are not thread-safe, but any number of them may be 
+     * committed concurrently: commits are applied one at a time.</p>
+     * 
+     * @see LocalStorage#beginTransaction() 
+     */
+    public final class Transaction implements AutoCloseable {
+
+        /* A null content means the file is to be deleted. */
+        private final Map<String, byte[]> staged = new LinkedHashMap<>();
+        private boolean finished = false;
+
+        private Transaction() {
+        }
+
+        private void checkActive() {
+            if (finished) {
+                throw new IllegalStateException("transaction is finished");
+            }
+        }
+
+        /**
+         * Stages <code>bean</code> to be saved to the file specified by 
+         * <code>fileName</code>, replacing anything already staged for that
+         * file.
+         * 
+         * @param bean the object to save
+         * @param fileName name of the file
+         * @throws IOException if <code>bean</code> can't be encoded
+         */
+        public void save(Object bean, String fileName) throws IOException {
+            checkFileName(fileName);
+            checkActive();
+            staged.put(fileName, encode(bean, fileName).toByteArray());
+        }
+
+        /**
+         * Stages the deletion of the file specified by <code>fileName</code>,
+         * replacing anything already staged for that file.
+         * 
+         * @param fileName name of the file
+         */
+        public void deleteFile(String fileName) {
+            checkFileName(fileName);
+            checkActive();
+            staged.put(fileName, null);
+        }
+
+        /**
+         * Writes all of the staged changes. If this method throws an 
+         * exception before the journal has been committed, none of the 
+         * changes are made.
+         * 
+         * @throws IOException in the event an error occurs writing the 
+         *          journal or applying the changes
+         * @throws IllegalStateException if the transaction has already been
+         *          committed or rolled back
+         */
+        public void commit() throws IOException {
+            checkActive();
+            finished = true;
+            if (!staged.isEmpty()) {
+                commitJournal(staged);
+            }
+        }
+
+        /**
+         * Discards all of the staged changes.
+         */
+        public void rollback() {
+            finished = true;
+            staged.clear();
+        }
+
+        /**
+         * Rolls the transaction back, unless it has been committed.
+         */
+        @Override
+        public void close() {
+            if (!finished) {
+                rollback();
+            }
+        }
+    }
+
+    /* File names hash to one of these stripes. Each stripe pairs a 
+     * read/write lock, which orders the threads of this process, with a lock
+     * on one byte of the lock file, which orders processes that share the 
+     * directory. Readers of a stripe share both locks and writers hold both
+     * exclusively, so operations on files in different stripes never wait
+     * for each other.
+     */
+    private static final int LOCK_STRIPES = 64;
+    private static final String LOCK_FILE_NAME = "localstorage.lock";
+    private final Stripe[] stripes = new Stripe[LOCK_STRIPES];
+
+    private class Stripe {
+
+        private final int index;
+        private final ReentrantReadWriteLock lock 
+                = new ReentrantReadWriteLock();
+        /* Only one FileLock may cover a region in each process, so the 
+         * readers of a stripe share it and the last one out releases it. A
+         * thread that holds the stripe exclusively may also take it shared;
+         * its exclusive FileLock covers that, so no other is taken, and it's
+         * only released with the exclusive hold. Guarded by this.
+         */
+        private int sharedHolds = 0;
+        private FileLock fileLock = null;
+
+        Stripe(int index) {
+            this.index = index;
+        }
+
+        void lockShared() throws IOException {
+            lock.readLock().lock();
+            try {
+                synchronized (this) {
+                    if ((sharedHolds == 0) 
+                            && !lock.isWriteLockedByCurrentThread()) {
+                        setFileLock(getLocalIO().lockRegion(index, true));
+                    }
+                    sharedHolds++;
+                }
+            } catch (IOException | RuntimeException e) {
+                lock.readLock().unlock();
+                throw e;
+            }
+        }
+
+        void unlockShared() throws IOException {
+            try {
+                synchronized (this) {
+                    if ((--sharedHolds == 0) 
+                            && !lock.isWriteLockedByCurrentThread()) {
+                        releaseFileLock();
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        void lockExclusive() throws IOException {
+            lock.writeLock().lock();
+            if (lock.getWriteHoldCount() > 1) {
+                return;
+            }
+            try {
+                FileLock fl = getLocalIO().lockRegion(index, false);
+                synchronized (this) {
+                    setFileLock(fl);
+                }
+            } catch (IOException | RuntimeException e) {
+                lock.writeLock().unlock();
+                throw e;
+            }
+        }
+
+        void unlockExclusive() throws IOException {
+            try {
+                if (lock.getWriteHoldCount() == 1) {
+                    synchronized (this) {
+                        releaseFileLock();
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        /* Locks the stripe exclusively within this process only, without
+         * waiting. See evictStorage.
+         */
+        boolean tryLockLocal() {
+            return lock.writeLock().tryLock();
+        }
+
+        /* Whether this thread holds the stripe in either mode, so that 
+         * tryLockLocal would succeed, reentrantly, on a file it's using.
+         */
+        boolean isHeldByCurrentThread() {
+            return lock.isWriteLockedByCurrentThread() 
+                    || (lock.getReadHoldCount() > 0);
+        }
+
+        void unlockLocal() {
+            lock.writeLock().unlock();
+        }
+
+        /* Must be called holding this. A live lock is never replaced, since
+         * it could then never be released.
+         */
+        private void setFileLock(FileLock fl) {
+            if ((fileLock != null) && fileLock.isValid()) {
+                logger.log(Level.WARNING, "lock file region {0} already "
+                        + "held", index);
+                return;
+            }
+            fileLock = fl;
+        }
+
+        /* Must be called holding this. */
+        private void releaseFileLock() throws IOException {
+            FileLock fl = fileLock;
+            fileLock = null;
+            if ((fl != null) && fl.isValid()) {
+                fl.release();
+            }
+        }
+    }
+
+    private static int stripeIndex(String fileName) {
+        int h = fileName.hashCode();
+        h ^= (h >>> 16);
+        return h & (LOCK_STRIPES - 1);
+    }
+
+    /* The stripes held by one operation, released in the reverse of the 
+     * order in which they were acquired. Callers assign them to a variable
+     * and then write "try (locks)", since the body never refers to them.
+     */
+    private final class FileLocks implements AutoCloseable {
+
+        private final Stripe[] held;
+        private final boolean[] exclusive;
+        private int nHeld = 0;
+
+        FileLocks(int capacity) {
+            held = new Stripe[capacity];
+            exclusive = new boolean[capacity];
+        }
+
+        @Override
+        public void close() throws IOException {
+            IOException failure = null;
+            while (nHeld > 0) {
+                nHeld--;
+                try {
+                    if (exclusive[nHeld]) {
+                        held[nHeld].unlockExclusive();
+                    } else {
+                        held[nHeld].unlockShared();
+                    }
+                } catch (IOException e) {
+                    failure = (failure == null) ? e : failure;
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    /* Locks the stripes of readNames shared and those of writeNames 
+     * exclusively (either may be null). A stripe that's wanted both ways is 
+     * locked exclusively. Stripes are always acquired in ascending order, so
+     * that operations on several files can't deadlock.
+     */
+    private FileLocks lockFiles(List<String> readNames, List<String> writeNames)
+            throws IOException {
+        Boolean[] modes = new Boolean[LOCK_STRIPES];
+        int nStripes = 0;
+        if (readNames != null) {
+            for (String fileName : readNames) {
+                int i = stripeIndex(fileName);
+                if (modes[i] == null) {
+                    nStripes++;
+                    modes[i] = Boolean.FALSE;
+                }
+            }
+        }
+        if (writeNames != null) {
+            for (String fileName : writeNames) {
+                int i = stripeIndex(fileName);
+                if (modes[i] == null) {
+                    nStripes++;
+                }
+                modes[i] = Boolean.TRUE;
+            }
+        }
+        FileLocks locks = new FileLocks(nStripes);
+        try {
+            for (int i = 0; i < LOCK_STRIPES; i++) {
+                if (modes[i] != null) {
+                    acquire(locks, stripes[i], modes[i]);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            locks.close();
+            throw e;
+        }
+        return locks;
+    }
+
+    private FileLocks lockAllFiles() throws IOException {
+        FileLocks locks = new FileLocks(LOCK_STRIPES);
+        try {
+            for (Stripe stripe : stripes) {
+                acquire(locks, stripe, true);
+            }
+        } catch (IOException | RuntimeException e) {
+            locks.close();
+            throw e;
+        }
+        return locks;
+    }
+
+    private static void acquire(FileLocks locks, Stripe stripe, 
+            boolean exclusive) throws IOException {
+        if (exclusive) {
+            stripe.lockExclusive();
+        } else {
+            stripe.lockShared();
+        }
+        locks.held[locks.nHeld] = stripe;
+        locks.exclusive[locks.nHeld] = exclusive;
+        locks.nHeld++;
+    }
+
+    private static final String JOURNAL_FILE_NAME = "localstorage.journal";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String BACKUP_SUFFIX = ".bak";
+    private static final String CORRUPT_SUFFIX = ".corrupt";
+    private static final int JOURNAL_MAGIC = 0x4C53544A;  // "LSTJ"
+    private final Object journalLock = new Object();
+    private volatile boolean journalChecked = false;
+
+    private void commitJournal(Map<String, byte[]> changes) throws IOException {
+        ByteArrayOutputStream bst = new ByteArrayOutputStream();
+        CRC32 crc = new CRC32();
+        try (DataOutputStream dst = new DataOutputStream(
+                new CheckedOutputStream(bst, crc))) {
+            dst.writeInt(JOURNAL_MAGIC);
+            dst.writeInt(changes.size());
+            for (Map.Entry<String, byte[]> change : changes.entrySet()) {
+                dst.writeUTF(change.getKey());
+                byte[] content = change.getValue();
+                if (content == null) {
+                    dst.writeInt(-1);
+                } else {
+                    dst.writeInt(content.length);
+                    dst.write(content);
+                }
+            }
+            dst.writeLong(crc.getValue());
+        }
+        byte[] journal = bst.toByteArray();
+        String tempFileName = JOURNAL_FILE_NAME + TEMP_SUFFIX;
+        List<String> fileNames = new ArrayList<>(changes.keySet());
+        fileNames.add(JOURNAL_FILE_NAME);
+        synchronized (journalLock) {
+            FileLocks locks = lockFiles(null, fileNames);
+            try (locks) {
+                writeSynced(tempFileName, journal);
+                moveFile(tempFileName, JOURNAL_FILE_NAME);
+                getLocalIO().forceDirectory();  // the commit point
+                applyJournal(changes);
+                removeFile(JOURNAL_FILE_NAME);
+            }
+        }
+    }
+
+    /* Writes content to fileName and forces it to the storage device. */
+    private void writeSynced(String fileName, byte[] content) 
+            throws IOException {
+        LocalIO io = getLocalIO();
+        synchronized (quotaLock) {
+            if (isStorageAccounted()) {
+                reserveStorage(io, fileName, 
+                        content.length - io.fileLength(fileName));
+            }
+        }
+        Set<OpenOption> options = new HashSet<>(Arrays.asList(
+                StandardOpenOption.WRITE, StandardOpenOption.CREATE, 
+                StandardOpenOption.TRUNCATE_EXISTING));
+        SeekableByteChannel channel = io.openChannel(fileName, options);
+        if (channel == null) {
+            try (OutputStream ost = io.openOutputFile(fileName)) {
+                ost.write(content);
+            }
+            return;
+        }
+        try (SeekableByteChannel ch = channel) {
+            ByteBuffer buffer = ByteBuffer.wrap(content);
+            while (buffer.hasRemaining()) {
+                ch.write(buffer);
+            }
+            if (ch instanceof FileChannel) {
+                ((FileChannel) ch).force(true);
+            }
+        }
+    }
+
+    /* Must be called holding the journalLock, and exclusive locks on the
+     * journal and all of the files it changes. The changed files, and the
+     * renames and deletions, are forced to the device before returning,
+     * since the journal that could redo them is deleted next.
+     */
+    private void applyJournal(Map<String, byte[]> changes) throws IOException {
+        LocalIO io = getLocalIO();
+        for (Map.Entry<String, byte[]> change : changes.entrySet()) {
+            String fileName = change.getKey();
+            byte[] content = change.getValue();
+            if (content == null) {
+                removeFile(fileName);
+            } else {
+                replaceFile(fileName, content);
+                io.force(fileName);
+            }
+        }
+        io.forceDirectory();
+    }
+
+    /* Completes a transaction that was committed, but not fully applied, 
+     * before the application last exited, and discards one that wasn't 
+     * committed. This is only done once for each directory, so after the
+     * first call this doesn't lock anything, and commits don't hold up 
+     * other reads and writes.
+     */
+    private void recoverJournal() {
+        if (journalChecked) {
+            return;
+        }
+        synchronized (journalLock) {
+            if (journalChecked) {
+                return;
+            }
+            journalChecked = true;
+            LocalIO io = getLocalIO();
+            try {
+                if ((io.fileLength(JOURNAL_FILE_NAME) <= 0L) && (io.fileLength(
+                        JOURNAL_FILE_NAME + TEMP_SUFFIX) <= 0L)) {
+                    return;  // nothing to recover, don't lock everything
+                }
+                /* The files a leftover journal changes aren't known until it
+                 * has been read, so recovery locks all of them.
+                 */
+                FileLocks locks = lockAllFiles();
+                try (locks) {
+                    List<String> fileNames = Arrays.asList(getFileNames());
+                    if (fileNames.contains(JOURNAL_FILE_NAME + TEMP_SUFFIX)) {
+                        removeFile(JOURNAL_FILE_NAME + TEMP_SUFFIX);
+                    }
+                    if (fileNames.contains(JOURNAL_FILE_NAME)) {
+                        Map<String, byte[]> changes = readJournal();
+                        if (changes != null) {
+                            applyJournal(changes);
+                        }
+                        removeFile(JOURNAL_FILE_NAME);
+                    }
+                }
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "couldn't recover local storage "
+                        + "journal", e);
+            }
+        }
+    }
+
+    /* Returns null if the journal is incomplete or corrupt. */
+    private Map<String, byte[]> readJournal() throws IOException {
+        CRC32 crc = new CRC32();
+        Map<String, byte[]> changes = new LinkedHashMap<>();
+        LocalIO io = getLocalIO();
+        // Each file's content must fit in what's left of the journal
+        long remaining = io.fileLength(JOURNAL_FILE_NAME);
+        try (DataInputStream dst = new DataInputStream(new CheckedInputStream(
+                io.openInputFile(JOURNAL_FILE_NAME), crc))) {
+            if (dst.readInt() != JOURNAL_MAGIC) {
+                return null;
+            }
+            int count = dst.readInt();
+            for (int i = 0; i < count; i++) {
+                String fileName = dst.readUTF();
+                int length = dst.readInt();
+                byte[] content = null;
+                if (length >= 0) {
+                    remaining -= length;
+                    if (remaining < 0L) {
+                        logger.log(Level.WARNING, "discarding corrupt local "
+                                + "storage journal");
+                        return null;
+                    }
+                    content = new byte[length];
+                    dst.readFully(content);
+                }
+                changes.put(fileName, content);
+            }
+            long expected = crc.getValue();
+            if (dst.readLong() != expected) {
+                logger.log(Level.WARNING, "discarding corrupt local storage "
+                        + "journal");
+                return null;
+            }
+        } catch (EOFException e) {
+            logger.log(Level.WARNING, "discarding truncated local storage "
+                    + "journal");
+            return null;
+        }
+        return changes;
+    }
+
+    /**
+     * The compression applied to files written through {@link #openOutputFile
+     * openOutputFile} and {@link #save save}. Compressed files begin with a
+     * short header that identifies the compression, so {@link #openInputFile
+     * openInputFile} and {@link #load load} detect it transparently and files
+     * written without compression continue to load as before.
+     * 
+     * @see #setCompression(java.lang.String, Compression) 
+     */
+    public enum Compression {
+        /**
+         * Files are written as is.
+         */
+        NONE,
+        /**
+         * Files are compressed with the fastest Deflate level. The zlib 
+         * format's Adler-32 checksum detects truncated or damaged files.
+         */
+        DEFLATE,
+        /**
+         * Files are not compressed, but are framed with a CRC-32 checksum that
+         * is verified when the file is read back.
+         */
+        STORED
+    }
+
+    private static class CompressionRule {
+
+        private final String fileNamePattern;
+        private final Pattern pattern;
+        private final Compression compression;
+
+        CompressionRule(String fileNamePattern, Compression compression) {
+            this.fileNamePattern = fileNamePattern;
+            this.pattern = Pattern.compile(globToRegex(fileNamePattern));
+            this.compression = compression;
+        }
+
+        /* Only '*' and '?' are special, everything else matches literally */
+        private static String globToRegex(String glob) {
+            StringBuilder regex = new StringBuilder();
+            int start = 0;
+            for (int i = 0; i < glob.length(); i++) {
+                char c = glob.charAt(i);
+                if ((c == '*') || (c == '?')) {
+                    if (i > start) {
+                        regex.append(Pattern.quote(glob.substring(start, i)));
+                    }
+                    regex.append((c == '*') ? ".*" : ".");
+                    start = i + 1;
+                }
+            }
+            if (start < glob.length()) {
+                regex.append(Pattern.quote(glob.substring(start)));
+            }
+            return regex.toString();
+        }
+    }
+
+    /**
+     * Sets the compression used for files whose names match <code>
+     * fileNamePattern</code>. Patterns may contain the wildcards <code>*
+     * </code> (any sequence of characters) and <code>?</code> (any single 
+     * character), for example <code>"*.session.xml"</code>. If more than one
+     * pattern matches a file name, the one that was registered first is used.
+     * Setting the compression for a pattern that's already registered replaces
+     * it, and setting it to <code>null</code> removes the pattern.
+     * <p>
+     * Only files written after the compression has been set are affected;
+     * existing files are read correctly regardless of how they were written.
+     * </p>
+     * 
+     * @param fileNamePattern the file names to which the compression applies
+     * @param compression the compression to use, or <code>null</code>
+     * 
+     * @see #getCompression(java.lang.String) 
+     */
+    public void setCompression(String fileNamePattern, Compression compression) {
+        if (fileNamePattern == null) {
+            throw new IllegalArgumentException("null fileNamePattern");
+        }
+        synchronized (compressionRules) {
+            for (int i = 0; i < compressionRules.size(); i++) {
+                CompressionRule rule = compressionRules.get(i);
+                if (rule.fileNamePattern.equals(fileNamePattern)) {
+                    if (compression == null) {
+                        compressionRules.remove(i);
+                    } else {
+                        compressionRules.set(i, new CompressionRule(
+                                fileNamePattern, compression));
+                    }
+                    return;
+                }
+            }
+            if (compression != null) {
+                compressionRules.add(new CompressionRule(fileNamePattern, 
+                        compression));
+            }
+        }
+    }
+
+    /**
+     * Retrieves the compression that will be used to write the specified file.
+     * 
+     * @param fileName name of the file
+     * @return the compression for the file, <code>Compression.NONE</code> if
+     *          no registered pattern matches it
+     * 
+     * @see #setCompression(java.lang.String, Compression) 
+     */
+    public Compression getCompression(String fileName) {
+        checkFileName(fileName);
+        for (CompressionRule rule : compressionRules) {
+            if (rule.pattern.matcher(fileName).matches()) {
+                return rule.compression;
+            }
+        }
+        return Compression.NONE;
+    }
+
+    /* Compressed files start with this header, the last byte of which
+     * identifies the compression. The first byte isn't ASCII, so a header
+     * can't be mistaken for the start of an XML or text file.
+     */
+    private static final byte[] COMPRESSION_MAGIC = {(byte) 0x89, 'L', 'S'};
+    private static final byte DEFLATE_TAG = 'D';
+    private static final byte STORED_TAG = 'S';
+    private static final byte CHECKED_TAG = 'C';
+
+    /* An integrity frame encloses the (possibly compressed) content, so the
+     * checksum covers exactly the bytes that are on disk.
+     */
+    private static OutputStream openEncodedOutputStream(OutputStream ost, 
+            Compression compression, boolean framed) throws IOException {
+        if (framed) {
+            ost.write(COMPRESSION_MAGIC);
+            ost.write(CHECKED_TAG);
+            ost = new ChecksumFrameOutputStream(ost, new CRC32C());
+        }
+        switch (compression) {
+            case DEFLATE:
+                ost.write(COMPRESSION_MAGIC);
+                ost.write(DEFLATE_TAG);
+                return new FastDeflaterOutputStream(ost);
+            case STORED:
+                ost.write(COMPRESSION_MAGIC);
+                ost.write(STORED_TAG);
+                return new ChecksumFrameOutputStream(ost, new CRC32());
+            default:
+                return ost;
+        }
+    }
+
+    private static InputStream openDecodedInputStream(InputStream ist, 
+            String fileName) throws IOException {
+        if (ist == null) {
+            return null;
+        }
+        int headerLength = COMPRESSION_MAGIC.length + 1;
+        PushbackInputStream pst = new PushbackInputStream(ist, headerLength);
+        byte[] header = new byte[headerLength];
+        int n = 0;
+        while (n < headerLength) {
+            int nRead = pst.read(header, n, headerLength - n);
+            if (nRead == -1) {
+                break;
+            }
+            n += nRead;
+        }
+        if (n == headerLength) {
+            boolean compressed = true;
+            for (int i = 0; i < COMPRESSION_MAGIC.length; i++) {
+                compressed &= (header[i] == COMPRESSION_MAGIC[i]);
+            }
+            if (compressed && (header[headerLength - 1] == DEFLATE_TAG)) {
+                return new InflaterInputStream(pst);
+            } else if (compressed && (header[headerLength - 1] == STORED_TAG)) {
+                return new ChecksumFrameInputStream(pst, new CRC32(), fileName);
+            } else if (compressed && (header[headerLength - 1] == CHECKED_TAG)) {
+                InputStream frame = new ChecksumFrameInputStream(pst, 
+                        new CRC32C(), fileName);
+                return new FrameVerifyingInputStream(
+                        openDecodedInputStream(frame, fileName), frame);
+            }
+        }
+        if (n > 0) {
+            pst.unread(header, 0, n);
+        }
+        return pst;
+    }
+
+    /* InflaterInputStream stops reading as soon as the compressed data ends,
+     * which would leave an enclosing frame's checksum unread. This reads the
+     * rest of the frame, verifying it, when the content reaches its end.
+     */
+    private static class FrameVerifyingInputStream extends FilterInputStream {
+
+        private final InputStream frame;
+
+        FrameVerifyingInputStream(InputStream in, InputStream frame) {
+            super(in);
+            this.frame = frame;
+        }
+
+        private void verify() throws IOException {
+            byte[] buffer = new byte[512];
+            while (frame.read(buffer) != -1) {
+                // Only the checksum should remain
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b == -1) {
+                verify();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if ((n == -1) && (len > 0)) {
+                verify();
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            return in.skip(n);
+        }
+    }
+
+    /* DeflaterOutputStream only ends Deflaters it created itself */
+    private static class FastDeflaterOutputStream extends DeflaterOutputStream {
+
+        FastDeflaterOutputStream(OutputStream out) {
+            super(out, new Deflater(Deflater.BEST_SPEED), 8192);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                def.end();
+            }
+        }
+    }
+
+    /* Writes the data as a sequence of length-prefixed chunks, followed by
+     * an empty chunk and the checksum of all of the data. Framing the data
+     * this way lets the reader verify the checksum as it streams, without 
+     * knowing the file's length in advance.
+     */
+    private static class ChecksumFrameOutputStream extends FilterOutputStream {
+
+        private static final int CHUNK_SIZE = 8192;
+        private final DataOutputStream dst;
+        private final Checksum checksum;
+        private final byte[] chunk = new byte[CHUNK_SIZE];
+        private int chunkLength = 0;
+        private boolean closed = false;
+
+        ChecksumFrameOutputStream(OutputStream out, Checksum checksum) {
+            super(new DataOutputStream(out));
+            this.dst = (DataOutputStream) this.out;
+            this.checksum = checksum;
+        }
+
+        private void writeChunk() throws IOException {
+            if (chunkLength > 0) {
+                checksum.update(chunk, 0, chunkLength);
+                dst.writeInt(chunkLength);
+                dst.write(chunk, 0, chunkLength);
+                chunkLength = 0;
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (chunkLength == CHUNK_SIZE) {
+                writeChunk();
+            }
+            chunk[chunkLength++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (chunkLength == CHUNK_SIZE) {
+                    writeChunk();
+                }
+                int n = Math.min(len, CHUNK_SIZE - chunkLength);
+                System.arraycopy(b, off, chunk, chunkLength, n);
+                chunkLength += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writeChunk();
+            dst.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                writeChunk();
+                dst.writeInt(0);
+                dst.writeInt((int) checksum.getValue());
+                dst.flush();
+            } finally {
+                dst.close();
+            }
+        }
+    }
+
+    /* Reads the format written by ChecksumFrameOutputStream. A checksum
+     * mismatch, or a file that ends before the trailer, is reported with an
+     * IOException when the end of the data is reached.
+     */
+    private static class ChecksumFrameInputStream extends InputStream {
+
+        private final DataInputStream dst;
+        private final Checksum checksum;
+        private final String fileName;
+        private int chunkRemaining = 0;
+        private boolean eof = false;
+
+        ChecksumFrameInputStream(InputStream in, Checksum checksum, 
+                String fileName) {
+            this.dst = new DataInputStream(in);
+            this.checksum = checksum;
+            this.fileName = fileName;
+        }
+
+        /* Returns false at the end of the data, once the checksum has been
+         * verified.
+         */
+        private boolean nextChunk() throws IOException {
+            if (eof) {
+                return false;
+            }
+            try {
+                while (chunkRemaining == 0) {
+                    int length = dst.readInt();
+                    if (length < 0) {
+                        throw new CorruptFileException("corrupt frame in \"" + fileName 
+                                + "\"");
+                    } else if (length == 0) {
+                        int expected = dst.readInt();
+                        eof = true;
+                        if (expected != (int) checksum.getValue()) {
+                            throw new CorruptFileException("checksum mismatch in \"" 
+                                    + fileName + "\"");
+                        }
+                        return false;
+                    }
+                    chunkRemaining = length;
+                }
+            } catch (EOFException e) {
+                throw new CorruptFileException("truncated file \"" + fileName 
+                        + "\"", e);
+            }
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!nextChunk()) {
+                return -1;
+            }
+            int b = dst.read();
+            if (b == -1) {
+                throw new CorruptFileException("truncated file \"" + fileName 
+                        + "\"");
+            }
+            checksum.update(b);
+            chunkRemaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!nextChunk()) {
+                return -1;
+            }
+            int n = dst.read(b, off, Math.min(len, chunkRemaining));
+            if (n == -1) {
+                throw new CorruptFileException("truncated file \"" + fileName 
+                        + "\"");
+            }
+            checksum.update(b, off, n);
+            chunkRemaining -= n;
+            return n;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return eof ? 0 : Math.min(chunkRemaining, dst.available());
+        }
+
+        @Override
+        public void close() throws IOException {
+            dst.close();
+        }
+    }
+
+    /* Reports that a file's contents failed verification, as opposed to
+     * an error reading them, which may be temporary.
+     */
+    private static class CorruptFileException extends IOException {
+
+        private static final long serialVersionUID = 5270214863427741186L;
+
+        CorruptFileException(String message) {
+            super(message);
+        }
+
+        CorruptFileException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    /**
+     * Indicates whether files are written with an integrity checksum.
+     * 
+     * @return <code>true</code> if files are framed with a CRC-32C checksum
+     * 
+     * @see #setIntegrityChecked(boolean) 
+     */
+    public boolean isIntegrityChecked() {
+        return integrityChecked;
+    }
+
+    /**
+     * Sets whether files written through {@link #openOutputFile 
+     * openOutputFile} and {@link #save save} are framed with a CRC-32C 
+     * checksum, which is computed as the file is written and verified as it's
+     * read. The checksum is calculated by hardware on most processors, so it
+     * adds very little to the cost of reading and writing.
+     * <p>
+     * With integrity checking on, <code>save</code> also keeps the version of
+     * the file it replaces, with a <code>".bak"</code> suffix. If {@link #load
+     * load} finds that a file fails verification, the file is renamed with a
+     * <code>".corrupt"</code> suffix and the previous version, if there is 
+     * one, is restored and loaded instead. Files written with integrity
+     * checking on can always be read, whether or not it's still on. The 
+     * default is <code>false</code>.</p>
+     * <p>
+     * This is a bound property.</p>
+     * 
+     * @param integrityChecked <code>true</code> to frame files with a checksum
+     */
+    public void setIntegrityChecked(boolean integrityChecked) {
+        boolean oldValue = this.integrityChecked;
+        this.integrityChecked = integrityChecked;
+        firePropertyChange("integrityChecked", oldValue, integrityChecked);
+    }
+
+    /**
+     * Retrieves the storage limit on size of files or disk space.
+     * 
+     * @return size limit for storage
+     */
+    public long getStorageLimit() {
+        return storageLimit;
     }
 
     /**
-     * Retrieves the <code>ApplicationContext</code> under which the current
-     * <code>Application</code> is running. The <code>ApplicationContext</code>
-     * provides access to various information about the application, including
-     * its resources and storage system.
+     * Sets the storage limit on sizes of files or disk space allowed.
      * 
-     * @return the context under which the application is running
+     * @param storageLimit size limit for storage
      */
-    protected final ApplicationContext getContext() {
-        return context;
-    }
-
-    private void checkFileName(String fileName) {
-        if (fileName == null) {
-            throw new IllegalArgumentException("null fileName");
+    public void setStorageLimit(long storageLimit) {
+        if (storageLimit < -1L) {
+            throw new IllegalArgumentException("invalid storageLimit");
+        }
+        long oldValue;
+        synchronized (quotaLock) {
+            oldValue = this.storageLimit;
+            this.storageLimit = storageLimit;
         }
+        firePropertyChange("storageLimit", oldValue, this.storageLimit);
     }
 
     /**
-     * Retrieves a <code>java.io.InputStream</code> object from which file data
-     * may be read.
+     * Retrieves the number of bytes currently used by the files in local
+     * storage.
+     * <p>
+     * The directory is only scanned the first time the usage is needed, after
+     * that a running total is kept up to date by {@link #openOutputFile 
+     * openOutputFile}, {@link #save save} and {@link #deleteFile deleteFile}.
+     * </p>
      * 
-     * @param fileName name of the file
-     * @return an <code>InputStream</code> through which the file contents may
-     *          be read
-     * @throws IOException in the event an error occurs accessing the file
+     * @return the number of bytes used
+     * @throws IOException in the event an error occurs scanning the storage
      * 
-     * @see java.io.InputStream
+     * @see #getStorageLimit() 
      */
-    public InputStream openInputFile(String fileName) throws IOException {
-        checkFileName(fileName);
-        return getLocalIO().openInputFile(fileName);
+    public long getStorageUsed() throws IOException {
+        synchronized (quotaLock) {
+            return initStorageUsed(getLocalIO());
+        }
     }
 
     /**
-     * Retrieves a <code>java.io.OutputStream</code> object to which file data
-     * may be written.
+     * Retrieves the policy used to free space when a write would exceed the
+     * {@link #getStorageLimit() storage limit}, or <code>null</code> if such
+     * writes simply fail.
      * 
-     * @param fileName name of the file
-     * @return an <code>OutputStream</code> through which the file contents may
-     *          be written
-     * @throws IOException in the event an error occurs accessing the file
+     * @return the eviction policy, or <code>null</code>
      * 
-     * @see java.io.OutputStream
+     * @see #setEvictionPolicy(EvictionPolicy) 
      */
-    public OutputStream openOutputFile(String fileName) throws IOException {
-        checkFileName(fileName);
-        return getLocalIO().openOutputFile(fileName);
+    public EvictionPolicy getEvictionPolicy() {
+        synchronized (quotaLock) {
+            return evictionPolicy;
+        }
     }
 
     /**
-     * Provides a means by which the file specified by <code>fileName</code> may
-     * be deleted from the underlying disk.
+     * Sets the policy used to free space when a write would exceed the 
+     * {@link #getStorageLimit() storage limit}. The default is <code>null
+     * </code>, which means that such writes fail with an <code>IOException
+     * </code> and nothing is deleted.
+     * <p>
+     * This is a bound property.</p>
      * 
-     * @param fileName the name of the file to delete
-     * @return <code>true</code> if the file is successfully deleted; 
-     *          <code>false</code> otherwise
-     * @throws IOException in the event an error occurs accessing the file
+     * @param evictionPolicy the eviction policy, or <code>null</code>
      * 
-     * @see java.io.File#delete() 
+     * @see OldestFirstEvictionPolicy
+     * @see PriorityEvictionPolicy
      */
-    public boolean deleteFile(String fileName) throws IOException {
-        checkFileName(fileName);
-        return getLocalIO().deleteFile(fileName);
+    public void setEvictionPolicy(EvictionPolicy evictionPolicy) {
+        EvictionPolicy oldValue;
+        synchronized (quotaLock) {
+            oldValue = this.evictionPolicy;
+            this.evictionPolicy = evictionPolicy;
+        }
+        firePropertyChange("evictionPolicy", oldValue, evictionPolicy);
     }
 
-    /* If an exception occurs in the XMLEncoder/Decoder, we want
-     * to throw an IOException.  The exceptionThrow listener method
-     * doesn't throw a checked exception so we just set a flag
-     * here and check it when the encode/decode operation finishes
+    /* Storage accounting is only done once it's needed: either a limit has
+     * been set, or someone has asked for the usage. Until then writes are
+     * not counted, and the running total is built by a single directory scan
+     * the first time it's required.
      */
-    private static class AbortExceptionListener implements ExceptionListener {
-
-        public Exception exception = null;
+    private boolean isStorageAccounted() {
+        return (storageLimit != -1L) || (storageUsed != -1L);
+    }
 
-        @Override
-        public void exceptionThrown(Exception e) {
-            if (exception == null) {
-                exception = e;
+    private long initStorageUsed(LocalIO io) throws IOException {
+        if (storageUsed == -1L) {
+            long used = 0L;
+            for (String fileName : io.listFiles()) {
+                used += io.fileLength(fileName);
             }
+            storageUsed = used;
         }
+        return storageUsed;
     }
 
-    private static boolean persistenceDelegatesInitialized = false;
-
-    public void save(Object bean, final String fileName) throws IOException {
-        AbortExceptionListener el = new AbortExceptionListener();
-        XMLEncoder e = null;
-        /* Buffer the XMLEncoder's output so that decoding errors don't
-	 * cause us to trash the current version of the specified file.
-         */
-        ByteArrayOutputStream bst = new ByteArrayOutputStream();
-        try {
-            e = new XMLEncoder(bst);
-            if (!persistenceDelegatesInitialized) {
-                e.setPersistenceDelegate(Rectangle.class, new RectanglePD());
-                persistenceDelegatesInitialized = true;
+    /* Must be called with quotaLock held. Adds nBytes to the running total,
+     * evicting files per the evictionPolicy if that would exceed the limit,
+     * and fails if enough space can't be found. The file being written is 
+     * never evicted.
+     */
+    private void reserveStorage(LocalIO io, String fileName, long nBytes) 
+            throws IOException {
+        long used = initStorageUsed(io);
+        if ((nBytes > 0L) && (storageLimit != -1L) 
+                && (used + nBytes > storageLimit)) {
+            evictStorage(io, fileName, used + nBytes - storageLimit);
+            if (storageUsed + nBytes > storageLimit) {
+                throw new IOException("storage limit exceeded writing \"" 
+                        + fileName + "\": limit " + storageLimit + ", used " 
+                        + storageUsed + ", requested " + nBytes);
             }
-            e.setExceptionListener(el);
-            e.writeObject(bean);
-        } finally {
-            if (e != null) {
-                e.close();
+        }
+        storageUsed += nBytes;
+    }
+
+    private void releaseStorage(long nBytes) {
+        synchronized (quotaLock) {
+            if (storageUsed != -1L) {
+                storageUsed = Math.max(0L, storageUsed - nBytes);
             }
         }
-        if (el.exception != null) {
-            throw new IOException("save failed \"" + fileName + "\"", 
-                    el.exception);
+    }
+
+    private void evictStorage(LocalIO io, String fileName, long needed) 
+            throws IOException {
+        if (evictionPolicy == null) {
+            return;
+        }
+        List<String> candidates = new ArrayList<>();
+        for (String candidate : io.listFiles()) {
+            // Files this thread has locked, like the one replaceFile is
+            // writing a temporary for, are in use
+            if (isEvictable(candidate) && !candidate.equals(fileName)
+                    && !stripes[stripeIndex(candidate)]
+                            .isHeldByCurrentThread()) {
+                candidates.add(candidate);
+            }
         }
-        try (OutputStream ost = openOutputFile(fileName)) {
-            ost.write(bst.toByteArray());
+        long freed = 0L;
+        for (String victim : evictionPolicy.getEvictionOrder(this, candidates)) {
+            if (freed >= needed) {
+                break;
+            }
+            /* The caller already holds stripes, so waiting for another 
+             * could deadlock: a victim that's in use is skipped instead. 
+             * Only this process's threads are excluded; deleting a file 
+             * another process has open is harmless where it's allowed at 
+             * all, and fails, so the file is skipped, where it isn't.
+             */
+            Stripe stripe = stripes[stripeIndex(victim)];
+            if (!stripe.tryLockLocal()) {
+                continue;
+            }
+            try {
+                long length = io.fileLength(victim);
+                if (io.deleteFile(victim)) {
+                    logger.log(Level.FINE, "evicted \"{0}\" ({1} bytes)", 
+                            new Object[]{victim, length});
+                    storageUsed = Math.max(0L, storageUsed - length);
+                    freed += length;
+                }
+            } finally {
+                stripe.unlockLocal();
+            }
         }
     }
 
-    public Object load(String fileName) throws IOException {
-        InputStream ist = null;
+    /* Only the application's own files are evicted. The lock file and the
+     * journal belong to LocalStorage; a file's temporary and previous
+     * versions belong to the operation writing it, or to load's roll back; 
+     * a quarantined file is kept to be looked at; and the DiskCache bounds
+     * its own files, and would otherwise keep indexing evicted entries.
+     */
+    private static boolean isEvictable(String fileName) {
+        return !fileName.equals(LOCK_FILE_NAME) 
+                && !fileName.startsWith(JOURNAL_FILE_NAME)
+                && !fileName.endsWith(TEMP_SUFFIX) 
+                && !fileName.endsWith(BACKUP_SUFFIX)
+                && !fileName.endsWith(CORRUPT_SUFFIX)
+                && !DiskCache.isCacheFile(fileName);
+    }
+
+    /* Opens fileName for writing, charging the bytes written against the
+     * storage limit. If the caller knows how many bytes it's going to write,
+     * expectedLength is reserved before the file is opened (and truncated),
+     * so that we fail before the existing contents are lost.
+     */
+    private OutputStream openAccountedOutputFile(String fileName, 
+            long expectedLength) throws IOException {
+        LocalIO io = getLocalIO();
+        long reserved;
+        synchronized (quotaLock) {
+            if (!isStorageAccounted()) {
+                return io.openOutputFile(fileName);
+            }
+            reserved = expectedLength - io.fileLength(fileName);
+            reserveStorage(io, fileName, reserved);
+        }
+        OutputStream ost;
         try {
-            ist = openInputFile(fileName);
+            ost = io.openOutputFile(fileName);
         } catch (IOException e) {
-            return null;
+            releaseStorage(reserved);
+            throw e;
         }
-        AbortExceptionListener el = new AbortExceptionListener();
-        try (XMLDecoder d = new XMLDecoder(ist)) {
-            d.setExceptionListener(el);
-            Object bean = d.readObject();
-            if (el.exception != null) {
-                throw new IOException("load failed \"" + fileName + "\"", 
-                        el.exception);
+        return new QuotaOutputStream(ost, fileName, expectedLength);
+    }
+
+    /* Counts the bytes written to a LocalStorage file against the storage
+     * limit. The first prepaid bytes were reserved when the file was opened;
+     * if fewer than that are written, the difference is given back on close.
+     */
+    private class QuotaOutputStream extends FilterOutputStream {
+
+        private final String fileName;
+        private long prepaid;
+
+        QuotaOutputStream(OutputStream out, String fileName, long prepaid) {
+            super(out);
+            this.fileName = fileName;
+            this.prepaid = prepaid;
+        }
+
+        private void charge(int nBytes) throws IOException {
+            if (prepaid >= nBytes) {
+                prepaid -= nBytes;
+            } else {
+                long overflow = nBytes - prepaid;
+                prepaid = 0L;
+                synchronized (quotaLock) {
+                    reserveStorage(getLocalIO(), fileName, overflow);
+                }
             }
-            return bean;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            charge(1);
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            charge(len);
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (prepaid > 0L) {
+                releaseStorage(prepaid);
+                prepaid = 0L;
+            }
+            super.close();
         }
     }
 
-    private void closeStream(Closeable st, String fileName) throws IOException {
-        if (st != null) {
+    /* Charges writes that grow a LocalStorage file opened as a channel 
+     * against the storage limit, before they happen.
+     */
+    private class QuotaByteChannel implements SeekableByteChannel {
+
+        private final SeekableByteChannel channel;
+        private final String fileName;
+
+        QuotaByteChannel(SeekableByteChannel channel, String fileName) {
+            this.channel = channel;
+            this.fileName = fileName;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return channel.read(dst);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            long size = channel.size();
+            long growth = channel.position() + src.remaining() - size;
+            if (growth > 0L) {
+                synchronized (quotaLock) {
+                    reserveStorage(getLocalIO(), fileName, growth);
+                }
+            }
+            int n;
             try {
-                st.close();
-            } catch (java.io.IOException e) {
-                throw new IOException("close failed \"" + fileName + "\"", e);
+                n = channel.write(src);
+            } catch (IOException e) {
+                releaseStorage(Math.max(0L, growth));
+                throw e;
             }
+            long unused = size + Math.max(0L, growth) - channel.size();
+            if (unused > 0L) {
+                releaseStorage(unused);
+            }
+            return n;
+        }
+
+        @Override
+        public long position() throws IOException {
+            return channel.position();
+        }
+
+        @Override
+        public SeekableByteChannel position(long newPosition) 
+                throws IOException {
+            channel.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return channel.size();
+        }
+
+        @Override
+        public SeekableByteChannel truncate(long size) throws IOException {
+            long oldSize = channel.size();
+            channel.truncate(size);
+            releaseStorage(oldSize - channel.size());
+            return this;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
         }
     }
 
     /**
-     * Retrieves the storage limit on size of files or disk space.
+     * Decides which files are deleted, and in what order, when a write would
+     * exceed the {@link #getStorageLimit() storage limit}. Files are deleted in
+     * the order returned by {@link #getEvictionOrder getEvictionOrder} until
+     * enough space has been freed.
      * 
-     * @return size limit for storage
+     * @see #setEvictionPolicy(EvictionPolicy) 
      */
-    public long getStorageLimit() {
-        return storageLimit;
+    public interface EvictionPolicy {
+
+        /**
+         * Returns the files that may be deleted, in the order they should be
+         * deleted. Files that must never be deleted can simply be left out of
+         * the returned list.
+         * 
+         * @param localStorage the <code>LocalStorage</code> that is running 
+         *          out of space
+         * @param fileNames the names of the candidate files; does not include
+         *          the file being written, files in use by the writing 
+         *          thread, temporary, backup and quarantined files, or the
+         *          files of the {@link DiskCache}
+         * @return the files to delete, first victim first
+         * @throws IOException in the event an error occurs inspecting the 
+         *          files
+         */
+        List<String> getEvictionOrder(LocalStorage localStorage, 
+                List<String> fileNames) throws IOException;
     }
 
     /**
-     * Sets the storage limit on sizes of files or disk space allowed.
-     * 
-     * @param storageLimit size limit for storage
+     * An <code>EvictionPolicy</code> that deletes the least recently modified 
+     * files first.
      */
-    public void setStorageLimit(long storageLimit) {
-        if (storageLimit < -1L) {
-            throw new IllegalArgumentException("invalid storageLimit");
+    public static class OldestFirstEvictionPolicy implements EvictionPolicy {
+
+        /**
+         * {@inheritDoc }
+         */
+        @Override
+        public List<String> getEvictionOrder(LocalStorage localStorage, 
+                List<String> fileNames) throws IOException {
+            Map<String, Long> lastModified = new HashMap<>();
+            for (String fileName : fileNames) {
+                lastModified.put(fileName, 
+                        localStorage.getLastModified(fileName));
+            }
+            List<String> order = new ArrayList<>(fileNames);
+            order.sort(Comparator.comparing(lastModified::get));
+            return order;
+        }
+    }
+
+    /**
+     * An <code>EvictionPolicy</code> that deletes files in order of their
+     * registered priority, lowest priority first. Files that haven't been
+     * registered have a priority of zero, files with the same priority are
+     * deleted oldest first, and files registered as {@link #PINNED} are never
+     * deleted.
+     */
+    public static class PriorityEvictionPolicy 
+            extends OldestFirstEvictionPolicy {
+
+        /**
+         * The priority of files that must never be evicted.
+         */
+        public static final int PINNED = Integer.MAX_VALUE;
+        private final Map<String, Integer> priorities 
+                = new ConcurrentHashMap<>();
+
+        /**
+         * Registers the eviction priority for the specified file. Lower 
+         * priority files are evicted first.
+         * 
+         * @param fileName name of the file
+         * @param priority the file's priority, or {@link #PINNED}
+         */
+        public void setPriority(String fileName, int priority) {
+            if (fileName == null) {
+                throw new IllegalArgumentException("null fileName");
+            }
+            priorities.put(fileName, priority);
+        }
+
+        /**
+         * Retrieves the eviction priority registered for the specified file.
+         * 
+         * @param fileName name of the file
+         * @return the file's priority, zero if none has been registered
+         */
+        public int getPriority(String fileName) {
+            return priorities.getOrDefault(fileName, 0);
+        }
+
+        /**
+         * {@inheritDoc }
+         */
+        @Override
+        public List<String> getEvictionOrder(LocalStorage localStorage, 
+                List<String> fileNames) throws IOException {
+            List<String> evictable = new ArrayList<>();
+            for (String fileName : fileNames) {
+                if (getPriority(fileName) != PINNED) {
+                    evictable.add(fileName);
+                }
+            }
+            // Oldest first, then (stably) by priority
+            List<String> order = super.getEvictionOrder(localStorage, 
+                    evictable);
+            order.sort(Comparator.comparingInt(this::getPriority));
+            return order;
         }
-        long oldValue = this.storageLimit;
-        this.storageLimit = storageLimit;
-        firePropertyChange("storageLimit", oldValue, this.storageLimit);
     }
 
     private String getId(String key, String def) {
@@ -360,6 +2243,13 @@ public class LocalStorage extends AbstractBean {
     public void setDirectory(File directory) {
         File oldValue = this.directory;
         this.directory = directory;
+        synchronized (quotaLock) {
+            storageUsed = -1L;  // rescan the new directory when it's needed
+        }
+        invalidateDiskCache();  // its index lives in the old directory
+        synchronized (journalLock) {
+            journalChecked = false;
+        }
         firePropertyChange("directory", oldValue, this.directory);
     }
 
@@ -382,46 +2272,14 @@ public class LocalStorage extends AbstractBean {
     */
     
 
-    /* There are some (old) Java classes that aren't proper beans.  Rectangle
-     * is one of these.  When running within the secure sandbox, writing a 
-     * Rectangle with XMLEncoder causes a security exception because 
-     * DefaultPersistenceDelegate calls Field.setAccessible(true) to gain
-     * access to private fields.  This is a workaround for that problem.
-     * A bug has been filed, see JDK bug ID 4741757  
+    /**
+     * Retrieves the backend through which files are read and written. Unless
+     * one has been {@link #setLocalIO(LocalIO) set}, files are kept on disk,
+     * in the {@link #getDirectory() directory}.
+     * 
+     * @return the storage backend
      */
-    /* *************************************************************************
-       * The JDK bug #4741757 was fixed in May of 2003, according to the bug   *
-       * database. Therefore, the `RectanglePD` class is no longer necessary   *
-       * so I have deprecated it. `instantiate(java.lang.Object,               *
-       * java.beans.Encoder)` will simply return `null` from this point on and *
-       * the class will simply create an empty object. I see no harm in doing  *
-       * this, as this class was only used for JNLP situations and JNLP support*
-       * was dropped by Oracle, Inc., in March of 2018, so we no longer need to*
-       * provide support for it. If a developer wants to use JNLP, they will   *
-       * need to obtain a new library that provides that API, such as IcedTea. *
-       * Since there are now multiple APIs that provide the JNLP support, it   *
-       * would be an added difficulty to us to have to maintain multiple JNLP  *
-       * classes/methods that allow the developers using this Framework to be  *
-       * able to count on this Framework to provide access to/from JNLP apps.  *
-       *                                                                       *
-       *                                         -> Sean Carrick, Feb 11, 2021 *
-       *************************************************************************
-    */
-    @Deprecated
-    private static class RectanglePD extends DefaultPersistenceDelegate {
-
-        @Deprecated
-        public RectanglePD() {
-            
-        }
-
-        @Deprecated
-        protected Expression instantiate(Object oldInstance, Encoder out) {
-            return null;
-        }
-    }
-
-    private synchronized LocalIO getLocalIO() {
+    public synchronized LocalIO getLocalIO() {
         if (localIO == null) {
             localIO = getPersistenceServiceIO();
             if (localIO == null) {
@@ -431,13 +2289,139 @@ public class LocalStorage extends AbstractBean {
         return localIO;
     }
 
-    private abstract class LocalIO {
+    /**
+     * Sets the backend through which files are read and written. Tests and
+     * benchmarks can use a {@link MemoryLocalIO} to keep files off the disk,
+     * so that they run without file system noise, and in parallel without 
+     * sharing a directory. Setting the backend to <code>null</code> restores
+     * the default, which keeps files in the {@link #getDirectory() directory}.
+     * <p>
+     * The backend should only be changed while no other thread is using this
+     * <code>LocalStorage</code>.</p>
+     * <p>
+     * This is a bound property.</p>
+     * 
+     * @param localIO the storage backend, or <code>null</code>
+     */
+    public void setLocalIO(LocalIO localIO) {
+        LocalIO oldValue;
+        synchronized (this) {
+            oldValue = this.localIO;
+            this.localIO = localIO;
+        }
+        invalidateDiskCache();
+        synchronized (quotaLock) {
+            storageUsed = -1L;
+        }
+        synchronized (journalLock) {
+            journalChecked = false;
+        }
+        firePropertyChange("localIO", oldValue, localIO);
+    }
+
+    /**
+     * The strategy through which a <code>LocalStorage</code> reads and writes
+     * its files. File names are always relative to the storage; how and where
+     * the files are kept is up to the backend.
+     * <p>
+     * Implementations must be thread-safe. Missing files are reported with an
+     * <code>IOException</code> by the methods that open them, and as having
+     * a length and modification time of <code>0L</code>.</p>
+     * 
+     * @see LocalStorage#setLocalIO(LocalIO) 
+     */
+    public static abstract class LocalIO {
 
         public abstract InputStream openInputFile(String fileName) throws IOException;
 
-        public abstract OutputStream openOutputFile(String fileName) throws IOException;
+        public abstract OutputStream openOutputFile(String fileName) throws IOException;
+
+        public abstract boolean deleteFile(String fileName) throws IOException;
+
+        public abstract String[] listFiles() throws IOException;
+
+        public abstract long fileLength(String fileName) throws IOException;
+
+        public abstract long lastModified(String fileName) throws IOException;
+
+        /**
+         * Renames a file, replacing the target if it exists, as atomically as
+         * the backend allows.
+         * 
+         * @param fromFileName the current name of the file
+         * @param toFileName the new name of the file
+         * @throws IOException in the event an error occurs renaming the file
+         */
+        public abstract void renameFile(String fromFileName, String toFileName) 
+                throws IOException;
+
+        public abstract SeekableByteChannel openChannel(String fileName, 
+                Set<? extends OpenOption> options) throws IOException;
+
+        public abstract ByteBuffer map(String fileName, 
+                FileChannel.MapMode mode) throws IOException;
+
+        /**
+         * Locks one byte of the storage's lock file against other processes.
+         * The default implementation returns <code>null</code>, which is
+         * right for backends that aren't shared between processes.
+         * 
+         * @param position the byte to lock
+         * @param shared <code>true</code> for a shared lock, <code>false
+         *          </code> for an exclusive one
+         * @return the lock, or <code>null</code>
+         * @throws IOException in the event an error occurs taking the lock
+         */
+        public FileLock lockRegion(long position, boolean shared) 
+                throws IOException {
+            return null;
+        }
+
+        /**
+         * Forces a file's contents to the storage device, so that they
+         * survive a crash. The default implementation does nothing, which
+         * is right for backends that aren't persistent.
+         * 
+         * @param fileName the file to force
+         * @throws IOException in the event an error occurs forcing the file
+         */
+        public void force(String fileName) throws IOException {
+        }
+
+        /**
+         * Forces the storage's list of files to the storage device, so that
+         * files that have been created, renamed or deleted stay that way
+         * after a crash. The default implementation does nothing.
+         * 
+         * @throws IOException in the event an error occurs forcing the 
+         *          directory
+         */
+        public void forceDirectory() throws IOException {
+        }
 
-        public abstract boolean deleteFile(String fileName) throws IOException;
+        /**
+         * Copies a file's contents. The default implementation copies them
+         * through a stream.
+         * 
+         * @param fromFileName name of the file to copy
+         * @param toFileName name of the copy
+         * @return the number of bytes copied
+         * @throws IOException in the event an error occurs copying the file
+         */
+        public long copy(String fromFileName, String toFileName) 
+                throws IOException {
+            long nBytes = 0L;
+            byte[] buffer = new byte[8192];
+            try (InputStream ist = openInputFile(fromFileName);
+                    OutputStream ost = openOutputFile(toFileName)) {
+                int n;
+                while ((n = ist.read(buffer)) != -1) {
+                    ost.write(buffer, 0, n);
+                    nBytes += n;
+                }
+            }
+            return nBytes;
+        }
     }
 
     private class LocalFileIO extends LocalIO {
@@ -446,7 +2430,12 @@ public class LocalStorage extends AbstractBean {
         public InputStream openInputFile(String fileName) throws IOException {
             File path = new File(getDirectory(), fileName);
             try {
-                return new BufferedInputStream(new FileInputStream(path));
+                /* Unlike FileInputStream's, which reports being denied 
+                 * access the same way, this only throws a 
+                 * NoSuchFileException if the file doesn't exist.
+                 */
+                return new BufferedInputStream(Files.newInputStream(
+                        path.toPath()));
             } catch (IOException e) {
                 throw new IOException("couldn't open input file \"" + fileName 
                         + "\"", e);
@@ -475,6 +2464,206 @@ public class LocalStorage extends AbstractBean {
             File path = new File(getDirectory(), fileName);
             return path.delete();
         }
+
+        @Override
+        public String[] listFiles() throws IOException {
+            File[] files = getDirectory().listFiles(File::isFile);
+            if (files == null) {
+                return new String[0];
+            }
+            String[] fileNames = new String[files.length];
+            for (int i = 0; i < files.length; i++) {
+                fileNames[i] = files[i].getName();
+            }
+            return fileNames;
+        }
+
+        @Override
+        public long fileLength(String fileName) throws IOException {
+            return new File(getDirectory(), fileName).length();
+        }
+
+        @Override
+        public long lastModified(String fileName) throws IOException {
+            return new File(getDirectory(), fileName).lastModified();
+        }
+
+        @Override
+        public void renameFile(String fromFileName, String toFileName) 
+                throws IOException {
+            File dir = getDirectory();
+            Path from = new File(dir, fromFileName).toPath();
+            Path to = new File(dir, toFileName).toPath();
+            try {
+                try {
+                    Files.move(from, to, StandardCopyOption.ATOMIC_MOVE, 
+                            StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException e) {
+                throw new IOException("couldn't rename \"" + fromFileName 
+                        + "\" to \"" + toFileName + "\"", e);
+            }
+        }
+
+        private File lockDirectory = null;
+        private FileChannel lockChannel = null;
+
+        /* Byte-range locks may lie beyond the end of the file, so the lock
+         * file stays empty. Its channel is kept open for as long as the 
+         * storage uses the directory: closing it would release every lock
+         * this process holds on it.
+         */
+        @Override
+        public FileLock lockRegion(long position, boolean shared) 
+                throws IOException {
+            FileChannel channel;
+            synchronized (this) {
+                File dir = getDirectory();
+                if ((lockChannel == null) || !dir.equals(lockDirectory)) {
+                    checkDirectory();
+                    if (lockChannel != null) {
+                        /* Locks still held in the old directory become
+                         * invalid, which their stripes check on release.
+                         */
+                        lockChannel.close();
+                        lockChannel = null;
+                    }
+                    lockChannel = FileChannel.open(
+                            new File(dir, LOCK_FILE_NAME).toPath(), 
+                            StandardOpenOption.READ, StandardOpenOption.WRITE,
+                            StandardOpenOption.CREATE);
+                    lockDirectory = dir;
+                }
+                channel = lockChannel;
+            }
+            /* A blocking lock() is liable to fail with EDEADLK: POSIX locks 
+             * belong to the process, so while other threads hold other 
+             * stripes the kernel sees a cycle that doesn't exist. Stripes are
+             * always taken in order, so polling can't deadlock.
+             */
+            try {
+                long delay = 1L;
+                FileLock fileLock;
+                while ((fileLock = channel.tryLock(position, 1L, shared)) 
+                        == null) {
+                    Thread.sleep(delay);
+                    delay = Math.min(delay * 2L, 50L);
+                }
+                return fileLock;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted waiting for "
+                        + "lock file region " + position);
+            } catch (OverlappingFileLockException e) {
+                /* Another LocalStorage in this process holds the region; the
+                 * operating system can't order threads of the same process.
+                 */
+                logger.log(Level.FINE, "lock file region {0} already held "
+                        + "in this process", position);
+                return null;
+            }
+        }
+
+        @Override
+        public void force(String fileName) throws IOException {
+            File path = new File(getDirectory(), fileName);
+            try (FileChannel channel = FileChannel.open(path.toPath(), 
+                    StandardOpenOption.READ)) {
+                channel.force(true);
+            } catch (IOException e) {
+                throw new IOException("couldn't force file \"" + fileName 
+                        + "\"", e);
+            }
+        }
+
+        @Override
+        public void forceDirectory() throws IOException {
+            try (FileChannel channel = FileChannel.open(
+                    getDirectory().toPath(), StandardOpenOption.READ)) {
+                channel.force(true);
+            } catch (IOException e) {
+                /* Some platforms, Windows among them, can't open a directory
+                 * as a file; their file systems don't need it.
+                 */
+                logger.log(Level.FINE, "couldn't force directory", e);
+            }
+        }
+
+        private void checkDirectory() throws IOException {
+            File dir = getDirectory();
+            if (!dir.isDirectory()) {
+                if (!dir.mkdirs()) {
+                    throw new IOException("couldn't create directory " + dir);
+                }
+            }
+        }
+
+        @Override
+        public SeekableByteChannel openChannel(String fileName, 
+                Set<? extends OpenOption> options) throws IOException {
+            if (options.contains(StandardOpenOption.CREATE) 
+                    || options.contains(StandardOpenOption.CREATE_NEW)) {
+                checkDirectory();
+            }
+            File path = new File(getDirectory(), fileName);
+            try {
+                return FileChannel.open(path.toPath(), options);
+            } catch (IOException e) {
+                throw new IOException("couldn't open channel \"" + fileName 
+                        + "\"", e);
+            }
+        }
+
+        @Override
+        public ByteBuffer map(String fileName, FileChannel.MapMode mode) 
+                throws IOException {
+            File path = new File(getDirectory(), fileName);
+            OpenOption[] options = (mode == FileChannel.MapMode.READ_WRITE) 
+                    ? new OpenOption[]{StandardOpenOption.READ, 
+                        StandardOpenOption.WRITE}
+                    : new OpenOption[]{StandardOpenOption.READ};
+            /* The mapping remains valid after the channel has been closed */
+            try (FileChannel channel = FileChannel.open(path.toPath(), 
+                    options)) {
+                return channel.map(mode, 0L, channel.size());
+            } catch (IOException e) {
+                throw new IOException("couldn't map file \"" + fileName 
+                        + "\"", e);
+            }
+        }
+
+        @Override
+        public long copy(String fromFileName, String toFileName) 
+                throws IOException {
+            checkDirectory();
+            File dir = getDirectory();
+            try (FileChannel src = FileChannel.open(
+                    new File(dir, fromFileName).toPath(), 
+                    StandardOpenOption.READ);
+                    FileChannel dst = FileChannel.open(
+                            new File(dir, toFileName).toPath(), 
+                            StandardOpenOption.WRITE, 
+                            StandardOpenOption.CREATE, 
+                            StandardOpenOption.TRUNCATE_EXISTING)) {
+                long size = src.size();
+                long position = 0L;
+                while (position < size) {
+                    long n = src.transferTo(position, size - position, dst);
+                    if (n <= 0L) {
+                        // transferTo returns 0 at the end of the file
+                        throw new IOException("\"" + fromFileName 
+                                + "\" was truncated while being copied");
+                    }
+                    position += n;
+                }
+                return position;
+            } catch (IOException e) {
+                throw new IOException("couldn't copy \"" + fromFileName 
+                        + "\" to \"" + toFileName + "\"", e);
+            }
+        }
     }
 
     /* Determine if we're a web started application and the
@@ -484,19 +2673,348 @@ public class LocalStorage extends AbstractBean {
      */
     /*
     ****************************************************************************
-    * As per the note above discussing the `RectanglePD` class, JNLP is no     *
-    * longer officially supported by Java and Oracle, Inc. Therefore, the      *
-    * method below has also been deprecated, as it relies on the deprecated    *
-    * class `PersistenceServiceIO` for JNLP launched applications. However, in *
-    * this instance, I have left all of the code for the `PersistenceServiceIO`*
-    * class in place, just commented out so that no functionality may be       *
-    * provided. I did this for historical purposes, in case we do decide to    *
-    * provide some web-launched capability for a third-party API, such as      *
-    * IcedTea.                                                                 *
+    * JNLP is no longer officially supported by Java and Oracle, Inc.          *
+    * Therefore, the method below has also been deprecated, as it relies on    *
+    * the deprecated class `PersistenceServiceIO` for JNLP launched            *
+    * applications. However, in this instance, I have left all of the code for *
+    * the `PersistenceServiceIO` class in place, just commented out so that no *
+    * functionality may be provided. I did this for historical purposes, in    *
+    * case we do decide to provide some web-launched capability for a          *
+    * third-party API, such as IcedTea.                                        *
     *                                                                          *
     *                                            -> Sean Carrick, Feb 11, 2021 *
     ****************************************************************************
     */
+    /**
+     * A <code>LocalIO</code> backend that keeps its files in memory. It's 
+     * thread-safe, and each instance is independent of all the others, so 
+     * tests that use one can run in parallel without colliding in a shared
+     * directory. An optional latency, applied to every operation that reads
+     * or writes files or their attributes, simulates a slower device.
+     * <p>
+     * A file's contents are replaced when the stream or channel writing them
+     * is closed, so readers see either the old contents or the new ones. A
+     * <code>READ_WRITE</code> {@link #map mapping} writes through to the 
+     * file's current contents.</p>
+     * 
+     * @see LocalStorage#setLocalIO(LocalIO) 
+     */
+    public static class MemoryLocalIO extends LocalIO {
+
+        private static class MemoryFile {
+
+            private final byte[] content;
+            private final long lastModified;
+
+            MemoryFile(byte[] content) {
+                this.content = content;
+                this.lastModified = System.currentTimeMillis();
+            }
+        }
+
+        private final Map<String, MemoryFile> files = new HashMap<>();
+        private volatile long latency = 0L;
+
+        /**
+         * Retrieves the latency added to every operation.
+         * 
+         * @return the simulated latency, in milliseconds
+         */
+        public long getLatency() {
+            return latency;
+        }
+
+        /**
+         * Sets the latency added to every operation, to simulate a slower
+         * device. The default is <code>0</code>.
+         * 
+         * @param latency the simulated latency, in milliseconds
+         */
+        public void setLatency(long latency) {
+            if (latency < 0L) {
+                throw new IllegalArgumentException("invalid latency");
+            }
+            this.latency = latency;
+        }
+
+        private void simulateLatency() throws IOException {
+            long millis = latency;
+            if (millis > 0L) {
+                try {
+                    Thread.sleep(millis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+        }
+
+        private synchronized MemoryFile getFile(String fileName) {
+            return files.get(fileName);
+        }
+
+        private synchronized void putFile(String fileName, byte[] content) {
+            files.put(fileName, new MemoryFile(content));
+        }
+
+        private MemoryFile checkFile(String fileName) throws IOException {
+            MemoryFile file = getFile(fileName);
+            if (file == null) {
+                throw new IOException("couldn't open input file \"" + fileName 
+                        + "\"", new NoSuchFileException(fileName));
+            }
+            return file;
+        }
+
+        @Override
+        public InputStream openInputFile(String fileName) throws IOException {
+            simulateLatency();
+            return new ByteArrayInputStream(checkFile(fileName).content);
+        }
+
+        @Override
+        public OutputStream openOutputFile(final String fileName) 
+                throws IOException {
+            simulateLatency();
+            // The file only appears, complete, when the stream is closed
+            return new ByteArrayOutputStream() {
+                private boolean closed = false;
+
+                @Override
+                public void close() {
+                    if (!closed) {
+                        closed = true;
+                        putFile(fileName, toByteArray());
+                    }
+                }
+            };
+        }
+
+        @Override
+        public boolean deleteFile(String fileName) throws IOException {
+            simulateLatency();
+            synchronized (this) {
+                return files.remove(fileName) != null;
+            }
+        }
+
+        @Override
+        public String[] listFiles() throws IOException {
+            simulateLatency();
+            synchronized (this) {
+                return files.keySet().toArray(new String[files.size()]);
+            }
+        }
+
+        @Override
+        public long fileLength(String fileName) throws IOException {
+            simulateLatency();
+            MemoryFile file = getFile(fileName);
+            return (file == null) ? 0L : file.content.length;
+        }
+
+        @Override
+        public long lastModified(String fileName) throws IOException {
+            simulateLatency();
+            MemoryFile file = getFile(fileName);
+            return (file == null) ? 0L : file.lastModified;
+        }
+
+        @Override
+        public void renameFile(String fromFileName, String toFileName) 
+                throws IOException {
+            simulateLatency();
+            synchronized (this) {
+                MemoryFile file = files.remove(fromFileName);
+                if (file == null) {
+                    throw new IOException("couldn't rename \"" + fromFileName 
+                            + "\" to \"" + toFileName + "\"", 
+                            new NoSuchFileException(fromFileName));
+                }
+                files.put(toFileName, file);
+            }
+        }
+
+        @Override
+        public SeekableByteChannel openChannel(String fileName, 
+                Set<? extends OpenOption> options) throws IOException {
+            simulateLatency();
+            boolean append = options.contains(StandardOpenOption.APPEND);
+            boolean writable = append 
+                    || options.contains(StandardOpenOption.WRITE);
+            byte[] content;
+            synchronized (this) {
+                MemoryFile file = files.get(fileName);
+                if ((file != null) 
+                        && options.contains(StandardOpenOption.CREATE_NEW)) {
+                    throw new FileAlreadyExistsException(fileName);
+                } else if (file == null) {
+                    boolean create = writable && (options.contains(
+                            StandardOpenOption.CREATE) || options.contains(
+                                    StandardOpenOption.CREATE_NEW));
+                    if (!create) {
+                        throw new NoSuchFileException(fileName);
+                    }
+                    content = new byte[0];
+                    files.put(fileName, new MemoryFile(content));
+                } else if (writable && options.contains(
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+                    content = new byte[0];
+                    files.put(fileName, new MemoryFile(content));
+                } else {
+                    content = file.content;
+                }
+            }
+            return new MemoryChannel(fileName, content, writable, append);
+        }
+
+        @Override
+        public ByteBuffer map(String fileName, FileChannel.MapMode mode) 
+                throws IOException {
+            simulateLatency();
+            byte[] content = checkFile(fileName).content;
+            if (mode == FileChannel.MapMode.READ_ONLY) {
+                return ByteBuffer.wrap(content).asReadOnlyBuffer();
+            } else if (mode == FileChannel.MapMode.PRIVATE) {
+                return ByteBuffer.wrap(content.clone());
+            }
+            return ByteBuffer.wrap(content);
+        }
+
+        @Override
+        public long copy(String fromFileName, String toFileName) 
+                throws IOException {
+            simulateLatency();
+            byte[] content = checkFile(fromFileName).content.clone();
+            putFile(toFileName, content);
+            return content.length;
+        }
+
+        /* Works on a private copy of the file's contents, which replaces 
+         * them when the channel is closed, if anything was written.
+         */
+        private class MemoryChannel implements SeekableByteChannel {
+
+            private final String fileName;
+            private final boolean writable;
+            private final boolean append;
+            private byte[] buffer;
+            private int size;
+            private long position = 0L;
+            private boolean copied = false;
+            private boolean modified = false;
+            private boolean open = true;
+
+            MemoryChannel(String fileName, byte[] content, boolean writable,
+                    boolean append) {
+                this.fileName = fileName;
+                this.buffer = content;
+                this.size = content.length;
+                this.writable = writable;
+                this.append = append;
+            }
+
+            private void checkOpen() throws IOException {
+                if (!open) {
+                    throw new ClosedChannelException();
+                }
+            }
+
+            @Override
+            public synchronized int read(ByteBuffer dst) throws IOException {
+                checkOpen();
+                if (position >= size) {
+                    return -1;
+                }
+                int n = (int) Math.min(dst.remaining(), size - position);
+                dst.put(buffer, (int) position, n);
+                position += n;
+                return n;
+            }
+
+            @Override
+            public synchronized int write(ByteBuffer src) throws IOException {
+                checkOpen();
+                if (!writable) {
+                    throw new NonWritableChannelException();
+                }
+                if (append) {
+                    position = size;
+                }
+                int n = src.remaining();
+                long end = position + n;
+                if (end > Integer.MAX_VALUE) {
+                    throw new IOException("file too large \"" + fileName 
+                            + "\"");
+                }
+                if (!copied || (end > buffer.length)) {
+                    // copy on first write, so readers keep the old contents
+                    buffer = Arrays.copyOf(buffer, Math.max(size, 
+                            Math.max((int) end, buffer.length * 2)));
+                    copied = true;
+                }
+                src.get(buffer, (int) position, n);
+                position = end;
+                size = Math.max(size, (int) end);
+                modified = true;
+                return n;
+            }
+
+            @Override
+            public synchronized long position() throws IOException {
+                checkOpen();
+                return position;
+            }
+
+            @Override
+            public synchronized SeekableByteChannel position(long newPosition) 
+                    throws IOException {
+                checkOpen();
+                if (newPosition < 0L) {
+                    throw new IllegalArgumentException("invalid position");
+                }
+                position = newPosition;
+                return this;
+            }
+
+            @Override
+            public synchronized long size() throws IOException {
+                checkOpen();
+                return size;
+            }
+
+            @Override
+            public synchronized SeekableByteChannel truncate(long newSize) 
+                    throws IOException {
+                checkOpen();
+                if (!writable) {
+                    throw new NonWritableChannelException();
+                }
+                if (newSize < size) {
+                    size = (int) newSize;
+                    modified = true;
+                }
+                position = Math.min(position, newSize);
+                return this;
+            }
+
+            @Override
+            public synchronized boolean isOpen() {
+                return open;
+            }
+
+            @Override
+            public synchronized void close() throws IOException {
+                if (open) {
+                    open = false;
+                    if (modified) {
+                        putFile(fileName, Arrays.copyOf(buffer, size));
+                    }
+                }
+            }
+        }
+    }
+
     private LocalIO getPersistenceServiceIO() {
         try {
             Class smClass = Class.forName("javax.jnlp.ServiceManager");
@@ -656,5 +3174,92 @@ public class LocalStorage extends AbstractBean {
 
             return false;
         }
+
+        /**
+         * <tt>listFiles</tt> will only return an empty array.
+         *
+         * @return
+         * @throws IOException
+         * @deprecated
+         */
+        @Deprecated
+        @Override
+        public String[] listFiles() throws IOException {
+            return new String[0];
+        }
+
+        /**
+         * <tt>fileLength</tt> will only return <tt>0L</tt>.
+         *
+         * @param fileName
+         * @return
+         * @throws IOException
+         * @deprecated
+         */
+        @Deprecated
+        @Override
+        public long fileLength(String fileName) throws IOException {
+            return 0L;
+        }
+
+        /**
+         * <tt>lastModified</tt> will only return <tt>0L</tt>.
+         *
+         * @param fileName
+         * @return
+         * @throws IOException
+         * @deprecated
+         */
+        @Deprecated
+        @Override
+        public long lastModified(String fileName) throws IOException {
+            return 0L;
+        }
+
+        /**
+         * <tt>renameFile</tt> does nothing.
+         *
+         * @param fromFileName
+         * @param toFileName
+         * @throws IOException
+         * @deprecated
+         */
+        @Deprecated
+        @Override
+        public void renameFile(String fromFileName, String toFileName) 
+                throws IOException {
+        }
+
+        /**
+         * <tt>openChannel</tt> will only return a null value.
+         *
+         * @param fileName
+         * @param options
+         * @return
+         * @throws IOException
+         * @deprecated
+         */
+        @Deprecated
+        @Override
+        public SeekableByteChannel openChannel(String fileName, 
+                Set<? extends OpenOption> options) throws IOException {
+            return null;
+        }
+
+        /**
+         * <tt>map</tt> will only return a null value.
+         *
+         * @param fileName
+         * @param mode
+         * @return
+         * @throws IOException
+         * @deprecated
+         */
+        @Deprecated
+        @Override
+        public ByteBuffer map(String fileName, FileChannel.MapMode mode) 
+                throws IOException {
+            return null;
+        }
     } // End of PersistenceServiceIO class
 }
@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2021 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jdesktop.application;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A <code>TaskService</code> that runs waiting Tasks in order of their
+ * {@link Task#getPriority() priority}, rather than in the order they were
+ * executed, so that a Task the user is waiting for needn't wait behind
+ * background work. Tasks with the same priority run in the order they were
+ * executed.
+ * <p>
+ * So that a steady stream of high priority Tasks can't starve the others
+ * forever, waiting Tasks age: a Task's priority effectively rises by one
+ * level for each {@link #getAgingInterval() aging interval} it has waited.
+ * With the default interval of 5 seconds, a {@link Task#MIN_PRIORITY
+ * MIN_PRIORITY} Task runs ahead of newly executed {@link Task#MAX_PRIORITY
+ * MAX_PRIORITY} Tasks once it has waited 45 seconds.</p>
+ * <p>
+ * A Task's priority is taken when it's executed. It can be set by the Task
+ * itself, or for the Task returned by an <code>&#064;Action</code>, with the
+ * annotation's <code>priority</code> element:</p>
+ * ```java
+ * getContext().addTaskService(new PriorityTaskService("prioritized"));
+ * // ...
+ * &#064;Action(taskService = "prioritized", priority = Task.MAX_PRIORITY)
+ * public Task openDocument() {
+ *     return new OpenDocumentTask(getApplication());
+ * }
+ * ```
+ *
+ * @see Task#setPriority(int)
+ * @see Action#priority()
+ *
+ * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
+ *
+ * @version 1.05
+ * @since 1.05
+ */
+public class PriorityTaskService extends TaskService {
+
+    private final long agingInterval;
+
+    /**
+     * Constructs a <code>PriorityTaskService</code> with the specified name,
+     * that runs up to 3 Tasks at a time, with an aging interval of 5 seconds.
+     *
+     * @param name the name of the service
+     */
+    public PriorityTaskService(String name) {
+        this(name, 3, 5000L);
+    }
+
+    /**
+     * Constructs a <code>PriorityTaskService</code> with the specified name,
+     * that runs up to <code>nThreads</code> Tasks at a time.
+     *
+     * @param name the name of the service
+     * @param nThreads the number of threads that run Tasks
+     * @param agingInterval the time, in milliseconds, a waiting Task's
+     *          priority takes to rise by one level
+     */
+    public PriorityTaskService(String name, int nThreads, long agingInterval) {
+        super(name, new PriorityExecutor(name, nThreads, agingInterval));
+        this.agingInterval = agingInterval;
+    }
+
+    /**
+     * Returns the time a waiting Task's priority takes to rise by one level.
+     *
+     * @return the aging interval, in milliseconds
+     */
+    public final long getAgingInterval() {
+        return agingInterval;
+    }
+
+    /* Queues each Runnable in an Entry that orders it. With every waiting
+     * Task's priority rising at the same rate, the Task that should run
+     * next at any time is the one with the largest
+     *
+     *     priority + (now - executed) / agingInterval
+     *
+     * and since "now" is common to them all, that's the Task with the
+     * largest priority * agingInterval - executed: a key that doesn't
+     * change while the Task waits, as a PriorityBlockingQueue requires.
+     */
+    private static class PriorityExecutor extends ThreadPoolExecutor {
+
+        private final long agingInterval;
+        private final AtomicLong sequence = new AtomicLong();
+
+        PriorityExecutor(String name, int nThreads, long agingInterval) {
+            super(nThreads, nThreads, 1L, TimeUnit.SECONDS,
+                    new PriorityBlockingQueue<>(), newThreadFactory(name),
+                    PriorityExecutor::reject);
+            if (agingInterval <= 0L) {
+                throw new IllegalArgumentException("invalid agingInterval");
+            }
+            this.agingInterval = agingInterval;
+            allowCoreThreadTimeOut(true);
+        }
+
+        private static ThreadFactory newThreadFactory(String name) {
+            if (name == null) {
+                throw new IllegalArgumentException("null name");
+            }
+            AtomicInteger threadNumber = new AtomicInteger(1);
+            return r -> new Thread(r, name + "-"
+                    + threadNumber.getAndIncrement());
+        }
+
+        /* The queue is unbounded, so a Task is only rejected once the 
+         * service has been shut down. Throwing would leave the Task listed
+         * by its service, and any input it blocks blocked, so it's 
+         * completed instead, as TaskService's own handler does.
+         */
+        private static void reject(Runnable r, ThreadPoolExecutor pool) {
+            Runnable command = (r instanceof Entry) ? ((Entry) r).command : r;
+            RejectedExecutionException e = new RejectedExecutionException(
+                    "TaskService has been shut down");
+            if (command instanceof Task) {
+                ((Task) command).rejected(e);
+            } else {
+                throw e;
+            }
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            if (command == null) {
+                throw new NullPointerException();
+            }
+            int priority = (command instanceof Task)
+                    ? ((Task) command).getPriority() : Task.NORM_PRIORITY;
+            long now = TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+            super.execute(new Entry(command,
+                    priority * agingInterval - now,
+                    sequence.getAndIncrement()));
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            List<Runnable> pending = new ArrayList<>();
+            for (Runnable r : super.shutdownNow()) {
+                pending.add((r instanceof Entry) ? ((Entry) r).command : r);
+            }
+            return pending;
+        }
+    }
+
+    private static class Entry implements Runnable, Comparable<Entry> {
+
+        private final Runnable command;
+        private final long key;
+        private final long sequence;
+
+        Entry(Runnable command, long key, long sequence) {
+            this.command = command;
+            this.key = key;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            command.run();
+        }
+
+        // Largest key first, then first executed first
+        @Override
+        public int compareTo(Entry other) {
+            int c = Long.compare(other.key, key);
+            return (c != 0) ? c : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,392 @@
+/*
+ * Copyright (C) 2021 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jdesktop.application;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Window;
+import java.awt.event.ComponentEvent;
+import java.awt.event.ComponentListener;
+import java.awt.event.WindowEvent;
+import java.awt.event.WindowStateListener;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.swing.JSplitPane;
+import javax.swing.JTabbedPane;
+import javax.swing.Timer;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+/**
+ * Saves the session state of windows in the background shortly after it
+ * changes, so that a crash doesn't lose the user's layout.
+ * <p>
+ * Each {@link #watch watched} window is listened to for changes to its bounds
+ * and frame state, and to the divider locations and selected tabs of the
+ * <code>JSplitPanes</code> and <code>JTabbedPanes</code> it contains. A change
+ * starts, or restarts, a timer; when no further change has occurred for the
+ * {@link #getDelay() delay}, the window's state is captured on the event
+ * dispatching thread and then encoded and written on a background thread. A
+ * burst of move, resize and divider events therefore results in a single
+ * write, and if the state turns out to be unchanged, in none at all.</p>
+ * <p>
+ * <code>SingleFrameApplication</code> watches the windows it shows, but the
+ * autosaver is disabled until {@link #setEnabled(boolean) enabled}:</p>
+ * <pre>
+ * getContext().getSessionAutosaver().setEnabled(true);
+ * </pre>
+ * <p>
+ * Like {@link TaskMonitor}, this class must only be used on the event
+ * dispatching thread.</p>
+ *
+ * @see ApplicationContext#getSessionAutosaver()
+ * @see SessionStorage#save(java.awt.Component, java.lang.String)
+ *
+ * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
+ *
+ * @version 1.05
+ * @since 1.05
+ */
+public class SessionAutosaver extends AbstractBean {
+
+    private static final Logger logger = Logger.getLogger(
+            SessionAutosaver.class.getName());
+    private final ApplicationContext context;
+    private boolean enabled = false;
+    private int delay = 2000;
+    private ExecutorService writer = null;
+    /* The latest state captured for each file that hasn't been written yet.
+     * A capture that finds an older one still waiting replaces it, rather
+     * than queueing another write.
+     */
+    private final Map<String, Map<String, Object>> pendingWrites
+            = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a <code>SessionAutosaver</code> that saves session state with
+     * the specified context's {@link SessionStorage}.
+     *
+     * @param context the application's context
+     */
+    public SessionAutosaver(ApplicationContext context) {
+        if (context == null) {
+            throw new IllegalArgumentException("null context");
+        }
+        this.context = context;
+    }
+
+    /**
+     * Retrieves the <code>ApplicationContext</code> whose session storage is
+     * used to save session state.
+     *
+     * @return the application's context
+     */
+    protected final ApplicationContext getContext() {
+        return context;
+    }
+
+    /**
+     * Indicates whether changes to watched windows are saved.
+     *
+     * @return <code>true</code> if the autosaver is enabled
+     *
+     * @see #setEnabled(boolean)
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Sets whether changes to watched windows are saved. Disabling the
+     * autosaver stops any pending saves that haven't been captured yet. The
+     * default is <code>false</code>.
+     * <p>
+     * This is a bound property.</p>
+     *
+     * @param enabled <code>true</code> to save changes to watched windows
+     */
+    public void setEnabled(boolean enabled) {
+        boolean oldValue = this.enabled;
+        this.enabled = enabled;
+        firePropertyChange("enabled", oldValue, this.enabled);
+    }
+
+    /**
+     * Retrieves the quiet period, after the last change to a window, before
+     * its state is saved.
+     *
+     * @return the delay, in milliseconds
+     *
+     * @see #setDelay(int)
+     */
+    public int getDelay() {
+        return delay;
+    }
+
+    /**
+     * Sets the quiet period, after the last change to a window, before its
+     * state is saved. The default is 2000 milliseconds.
+     * <p>
+     * This is a bound property.</p>
+     *
+     * @param delay the delay, in milliseconds
+     */
+    public void setDelay(int delay) {
+        if (delay < 0) {
+            throw new IllegalArgumentException("invalid delay");
+        }
+        int oldValue = this.delay;
+        this.delay = delay;
+        firePropertyChange("delay", oldValue, this.delay);
+    }
+
+    /**
+     * Starts watching the specified window for changes, which will be saved
+     * to the <code>LocalStorage</code> file <code>fileName</code>. Only the
+     * split and tabbed panes the window contains when this method is called
+     * are watched; changes to other components can be reported with {@link
+     * #markChanged markChanged}. Watching a window that's already watched
+     * has no effect.
+     *
+     * @param window the window to watch
+     * @param fileName the session file for the window
+     *
+     * @see #unwatch(java.awt.Window)
+     */
+    public void watch(Window window, String fileName) {
+        if (window == null) {
+            throw new IllegalArgumentException("null window");
+        }
+        if (fileName == null) {
+            throw new IllegalArgumentException("null fileName");
+        }
+        if (getWatch(window) != null) {
+            return;
+        }
+        Watch watch = new Watch(window, fileName);
+        window.addComponentListener(watch);
+        window.addWindowStateListener(watch);
+        addComponentListeners(window, watch);
+    }
+
+    /**
+     * Stops watching the specified window. A save that's already been
+     * scheduled is cancelled.
+     *
+     * @param window the window to stop watching
+     */
+    public void unwatch(Window window) {
+        if (window == null) {
+            throw new IllegalArgumentException("null window");
+        }
+        Watch watch = getWatch(window);
+        if (watch != null) {
+            watch.timer.stop();
+            window.removeComponentListener(watch);
+            window.removeWindowStateListener(watch);
+            removeComponentListeners(window, watch);
+        }
+    }
+
+    /**
+     * Reports that the session state of the specified watched window has
+     * changed, so that it will be saved after the quiet period.
+     *
+     * @param window a watched window
+     */
+    public void markChanged(Window window) {
+        if (window == null) {
+            throw new IllegalArgumentException("null window");
+        }
+        Watch watch = getWatch(window);
+        if (watch != null) {
+            watch.changed();
+        }
+    }
+
+    /**
+     * Stops all scheduled saves and waits, briefly, for writes that are
+     * already under way to finish. Applications call this before saving
+     * their session state as they exit, so that an older autosaved state
+     * can't be written after the final one.
+     */
+    public void stop() {
+        for (Window window : Window.getWindows()) {
+            Watch watch = getWatch(window);
+            if (watch != null) {
+                watch.timer.stop();
+            }
+        }
+        ExecutorService w = writer;
+        writer = null;
+        if (w != null) {
+            w.shutdown();
+            try {
+                if (!w.awaitTermination(5L, TimeUnit.SECONDS)) {
+                    logger.log(Level.WARNING, "session autosave still "
+                            + "writing");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private Watch getWatch(Window window) {
+        for (ComponentListener l : window.getComponentListeners()) {
+            if ((l instanceof Watch) && (((Watch) l).owner() == this)) {
+                return (Watch) l;
+            }
+        }
+        return null;
+    }
+
+    private void addComponentListeners(Container container, Watch watch) {
+        for (Component c : container.getComponents()) {
+            if (c instanceof JSplitPane) {
+                c.addPropertyChangeListener(
+                        JSplitPane.DIVIDER_LOCATION_PROPERTY, watch);
+            } else if (c instanceof JTabbedPane) {
+                ((JTabbedPane) c).addChangeListener(watch);
+            }
+            if (c instanceof Container) {
+                addComponentListeners((Container) c, watch);
+            }
+        }
+    }
+
+    private void removeComponentListeners(Container container, Watch watch) {
+        for (Component c : container.getComponents()) {
+            if (c instanceof JSplitPane) {
+                c.removePropertyChangeListener(
+                        JSplitPane.DIVIDER_LOCATION_PROPERTY, watch);
+            } else if (c instanceof JTabbedPane) {
+                ((JTabbedPane) c).removeChangeListener(watch);
+            }
+            if (c instanceof Container) {
+                removeComponentListeners((Container) c, watch);
+            }
+        }
+    }
+
+    /* Runs on the EDT when a window's quiet period ends. */
+    private void capture(Window window, String fileName) {
+        if (!enabled || !window.isDisplayable()) {
+            return;
+        }
+        SessionStorage sessionStorage = getContext().getSessionStorage();
+        Map<String, Object> stateMap = sessionStorage.capture(
+                Collections.singletonList(window), fileName);
+        if (pendingWrites.put(fileName, stateMap) == null) {
+            getWriter().execute(() -> write(fileName));
+        }
+    }
+
+    /* Runs on the writer thread. */
+    private void write(String fileName) {
+        Map<String, Object> stateMap = pendingWrites.remove(fileName);
+        if (stateMap == null) {
+            return;
+        }
+        try {
+            getContext().getSessionStorage().write(stateMap, fileName);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "couldn't autosave session ["
+                    + fileName + "]", e);
+        }
+    }
+
+    private ExecutorService getWriter() {
+        if (writer == null) {
+            writer = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "SessionAutosaver");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return writer;
+    }
+
+    /* All of the listeners for one watched window. Every event restarts the
+     * window's timer, so the save happens delay milliseconds after the last
+     * event of a burst.
+     */
+    private class Watch implements ComponentListener, WindowStateListener,
+            PropertyChangeListener, ChangeListener {
+
+        private final Timer timer;
+
+        Watch(Window window, String fileName) {
+            this.timer = new Timer(delay, e -> capture(window, fileName));
+            this.timer.setRepeats(false);
+        }
+
+        SessionAutosaver owner() {
+            return SessionAutosaver.this;
+        }
+
+        void changed() {
+            if (enabled) {
+                timer.setInitialDelay(delay);
+                timer.restart();
+            }
+        }
+
+        @Override
+        public void componentResized(ComponentEvent e) {
+            changed();
+        }
+
+        @Override
+        public void componentMoved(ComponentEvent e) {
+            changed();
+        }
+
+        @Override
+        public void componentShown(ComponentEvent e) {
+        }
+
+        @Override
+        public void componentHidden(ComponentEvent e) {
+        }
+
+        @Override
+        public void windowStateChanged(WindowEvent e) {
+            changed();
+        }
+
+        @Override
+        public void propertyChange(PropertyChangeEvent e) {
+            changed();
+        }
+
+        @Override
+        public void stateChanged(ChangeEvent e) {
+            changed();
+        }
+    }
+}
@@ -34,6 +34,7 @@
 package org.jdesktop.application;
 
 import java.applet.Applet;
+import java.awt.AWTEvent;
 import java.awt.Component;
 import java.awt.Container;
 import java.awt.Dialog;
@@ -41,13 +42,28 @@ import java.awt.Frame;
 import java.awt.GraphicsConfiguration;
 import java.awt.GraphicsEnvironment;
 import java.awt.Rectangle;
+import java.awt.Toolkit;
 import java.awt.Window;
+import java.awt.event.AWTEventListener;
+import java.awt.event.HierarchyEvent;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -56,7 +72,12 @@ import javax.swing.JFrame;
 import javax.swing.JSplitPane;
 import javax.swing.JTabbedPane;
 import javax.swing.JTable;
+import javax.swing.JTree;
+import javax.swing.RowSorter;
+import javax.swing.SortOrder;
 import javax.swing.table.TableColumn;
+import javax.swing.table.TableColumnModel;
+import javax.swing.tree.TreePath;
 
 /**
  * Support for storing GUI state that persists between Application sessions.
@@ -134,7 +155,30 @@ public class SessionStorage {
     private static final Logger logger = Logger.getLogger(
             SessionStorage.class.getName());
     private final Map<Class, Property> propertyMap;
+    /* Replaced, rather than cleared, by putProperty: a registration for a
+     * superclass changes the result for all of its subclasses.
+     */
+    private volatile ClassValue<Optional<Property>> propertyCache 
+            = createPropertyCache();
     private final ApplicationContext context;
+    private final Set<SaveTask> pendingSaves 
+            = ConcurrentHashMap.newKeySet();
+    private final Map<String, SavedState> savedStates 
+            = new ConcurrentHashMap<>();
+    /* State restored from each file for which there was no component yet, 
+     * by fileName and then pathname. It's applied by the DeferredRestorer 
+     * when the component is realized, and dropped when the file is next 
+     * saved or the component's window is disposed. Only used on the EDT.
+     */
+    private final Map<String, Map<String, Object>> deferredStates 
+            = new ConcurrentHashMap<>();
+    private final DeferredRestorer deferredRestorer = new DeferredRestorer();
+    /* The state most recently captured for each file, whether or not it's 
+     * been written yet. A capture of some of a file's roots keeps the others'
+     * entries from here.
+     */
+    private final Map<String, Map<String, Object>> capturedStates 
+            = new ConcurrentHashMap<>();
 
     /**
      * Constructs a SessionStorage object. The following {@link
@@ -164,8 +208,13 @@ public class SessionStorage {
      * </tr>
      * <tr>
      * <td>JTable</td>
-     * <td>TableProperty</td>
-     * <td>TableState</td>
+     * <td>TableLayoutProperty</td>
+     * <td>TableLayoutState</td>
+     * </tr>
+     * <tr>
+     * <td>JTree</td>
+     * <td>TreeProperty</td>
+     * <td>TreeState</td>
      * </tr>
      * </table>
      * <p>
@@ -188,11 +237,12 @@ public class SessionStorage {
             throw new IllegalArgumentException("null context");
         }
         this.context = context;
-        propertyMap = new HashMap<>();
+        propertyMap = new ConcurrentHashMap<>();
         propertyMap.put(Window.class, new WindowProperty());
         propertyMap.put(JTabbedPane.class, new TabbedPaneProperty());
         propertyMap.put(JSplitPane.class, new SplitPaneProperty());
-        propertyMap.put(JTable.class, new TableProperty());
+        propertyMap.put(JTable.class, new TableLayoutProperty());
+        propertyMap.put(JTree.class, new TreeProperty());
     }
 
     /* Acted on the FIX-ME comment from the original and added JavaDoc */
@@ -257,71 +307,150 @@ public class SessionStorage {
      * JFrame a name, it's name would have been "frame0".
      */
     private String getComponentPathname(Component c) {
-        String name = getComponentName(c);
-        if (name == null) {
+        if (getComponentName(c) == null) {
             return null;
         }
-        StringBuilder path = new StringBuilder(name);
-        while ((c.getParent() != null) && !(c instanceof Window) 
-                && !(c instanceof Applet)) {
-            c = c.getParent();
-            name = getComponentName(c);
+        return getComponentPath(c);
+    }
+
+    /* Like getComponentPathname, but an unnamed component c gets a 
+     * "[type][z-order]" path element, like its unnamed ancestors.
+     */
+    private String getComponentPath(Component c) {
+        StringBuilder path = new StringBuilder();
+        while (true) {
+            String name = getComponentName(c);
             if (name == null) {
-                int n = c.getParent().getComponentZOrder(c);
-                if (n >= 0) {
-                    Class cls = c.getClass();
-                    name = cls.getSimpleName();
-                    if (name.length() == 0) {
-                        name = "Anonymous" + cls.getSuperclass().getSimpleName();
-                    }
-                    name = name + n;
-                } else {
+                Container parent = c.getParent();
+                int n = (parent == null) ? 0 : parent.getComponentZOrder(c);
+                if (n < 0) {
                     // Implies that the component tree is changing
                     // while we're computing the path. Punt.
                     logger.log(Level.WARNING, "Couldn''t compute pathname "
                             + "for {0}", c);
                     return null;
                 }
+                name = getAnonymousPathElement(c, n);
+            }
+            if (path.length() > 0) {
+                path.append("/");
             }
-            path.append("/").append(name);
+            path.append(name);
+            if ((c.getParent() == null) || (c instanceof Window) 
+                    || (c instanceof Applet)) {
+                return path.toString();
+            }
+            c = c.getParent();
         }
-        return path.toString();
     }
 
-    /* Recursively walk the component tree, breadth first, storing the
-     * state - Property.getSessionState() - of named components under 
-     * their pathname (the key) in stateMap.
+    private String getAnonymousPathElement(Component c, int zOrder) {
+        Class cls = c.getClass();
+        String name = cls.getSimpleName();
+        if (name.length() == 0) {
+            name = "Anonymous" + cls.getSuperclass().getSimpleName();
+        }
+        return name + zOrder;
+    }
+
+    /* Called by walkTree for each named component that has a Property. */
+    private interface TreeVisitor {
+
+        void visit(Component c, Property p, String pathname);
+    }
+
+    /* Walk the component tree, breadth first, calling the visitor for each
+     * named component for which there's a Property, with its pathname. Used 
+     * by both save() and restore(), so that they visit, and name, components
+     * identically.
      * 
-     * Note: the breadth first tree-walking code here should remain 
-     * structurally identical to restoreTree().
+     * A component's pathname is its own path element followed by its 
+     * parent's pathname, so rather than walking up to the Window for every
+     * component (as getComponentPathname does), the walk links each child
+     * to its parent's PathNode. A pathname is only built when the visitor 
+     * needs it, from its parent's, which is built at most once; most 
+     * components have no Property and never need one. A child's index in its
+     * parent's component array is its z-order, so unnamed children are 
+     * numbered in the same pass. Pathnames are interned, because the same
+     * keys are used by every save and restore.
      */
-    private void saveTree(List<Component> roots, Map<String, Object> stateMap) {
-        List<Component> allChildren = new ArrayList<>();
-        roots.stream().map(root -> {
-            if (root != null) {
-                Property p = getProperty(root);
+    private void walkTree(Component root, TreeVisitor visitor) {
+        String rootPath = getComponentPath(root);
+        if (rootPath == null) {
+            return;
+        }
+        ArrayDeque<PathNode> nodes = new ArrayDeque<>();
+        nodes.add(new PathNode(root, rootPath.intern()));
+        while (!nodes.isEmpty()) {
+            PathNode node = nodes.remove();
+            Component c = node.component;
+            if (getComponentName(c) != null) {
+                Property p = getProperty(c);
                 if (p != null) {
-                    String pathname = getComponentPathname(root);
-                    if (pathname != null) {
-                        Object state = p.getSessionState(root);
-                        if (state != null) {
-                            stateMap.put(pathname, state);
-                        }
-                    }
+                    visitor.visit(c, p, getPathname(node));
+                }
+            }
+            if (c instanceof Container) {
+                Component[] children = ((Container) c).getComponents();
+                for (int i = 0; i < children.length; i++) {
+                    Component child = children[i];
+                    // A Window or Applet child starts a new pathname
+                    PathNode parent = ((child instanceof Window) 
+                            || (child instanceof Applet)) ? null : node;
+                    nodes.add(new PathNode(child, i, parent));
                 }
             }
-            return root;
-        }).filter(root -> (root instanceof Container)).map(root -> 
-                ((Container) root).getComponents()).filter(children -> 
-                        ((children != null) 
-                        && (children.length > 0))).forEachOrdered(children -> {
-            Collections.addAll(allChildren, children);
-        });
-        if (allChildren.size() > 0) {
-            saveTree(allChildren, stateMap);
         }
     }
 
+    /* A component visited by walkTree, and the means to compute its 
+     * pathname when it's needed.
+     */
+    private static final class PathNode {
+
+        private final Component component;
+        private final int index;
+        private final PathNode parent;
+        private String pathname = null;
+
+        PathNode(Component root, String pathname) {
+            this.component = root;
+            this.index = -1;
+            this.parent = null;
+            this.pathname = pathname;
+        }
+
+        PathNode(Component component, int index, PathNode parent) {
+            this.component = component;
+            this.index = index;
+            this.parent = parent;
+        }
+    }
+
+    private String getPathname(PathNode node) {
+        if (node.pathname == null) {
+            String name = getComponentName(node.component);
+            if (name == null) {
+                name = getAnonymousPathElement(node.component, node.index);
+            }
+            node.pathname = (node.parent == null) ? name.intern() 
+                    : (name + "/" + getPathname(node.parent)).intern();
+        }
+        return node.pathname;
+    }
+
+    /* Store the state - Property.getSessionState() - of named components
+     * under their pathname (the key) in stateMap.
+     */
+    private void saveTree(Component root, Map<String, Object> stateMap) {
+        walkTree(root, (c, p, pathname) -> {
+            Object state = p.getSessionState(c);
+            if (state != null) {
+                stateMap.put(pathname, state);
+            }
+        });
+    }
+
     /**
      * Saves the state of each named component in the specified hierarchy to a
      * file using {@link LocalStorage#save LocalStorage.save(fileName)}. Each
@@ -330,6 +459,12 @@ public class SessionStorage {
      * component has a {@link java.awt.Component#getName name}, then its
      * {@link Property#getSessionState state} is saved.
      * <p>
+     * If the state is equal, value for value, to the state last saved to, or
+     * restored from, <code>fileName</code>, and the file hasn't changed since,
+     * nothing is written. Session state classes should therefore implement
+     * <code>equals</code>; the state of a component whose class doesn't is 
+     * always considered changed.</p>
+     * <p>
      * Component names can be any string however they must be unique relative to
      * the name's of the component's siblings. Most Swing components do not have
      * a name by default, however there are some exceptions: JRootPane
@@ -372,47 +507,356 @@ public class SessionStorage {
      */
     public void save(Component root, String fileName) throws IOException {
         checkSaveRestoreArgs(root, fileName);
+        write(capture(Collections.singletonList(root), fileName), fileName);
+    }
+
+    /**
+     * Saves the state of each of the specified component hierarchies to a 
+     * single file, with one encoding pass and one write. This is typically 
+     * used to store the state of all of an application's windows together.
+     * Each hierarchy's state is saved as it would be by {@link 
+     * #save(java.awt.Component, java.lang.String) save}, so the roots must 
+     * have distinct names.
+     * <p>
+     * The file can also hold the state of roots that aren't in 
+     * <code>roots</code>, for example of windows that aren't showing: the 
+     * state last saved, or restored, for those is kept. The hierarchies can 
+     * be restored one at a time with {@link #restore restore}, which only 
+     * reads the file once.</p>
+     *
+     * @param roots the roots of the Component hierarchies to be saved.
+     * @param fileName the <code>LocalStorage</code> filename.
+     * @throws IOException in the event there is an error accessing the 
+     *          filesystem
+     */
+    public void save(Collection<? extends Component> roots, String fileName)
+            throws IOException {
+        if (roots == null) {
+            throw new IllegalArgumentException("null roots");
+        }
+        for (Component root : roots) {
+            checkSaveRestoreArgs(root, fileName);
+        }
+        write(capture(roots, fileName), fileName);
+    }
+
+    /**
+     * Captures the session state of the component hierarchy rooted by 
+     * <code>root</code> now, and returns a <code>Task</code> that saves it to
+     * <code>fileName</code> in the background. Only the capture, which is
+     * proportional to the number of components in the hierarchy, is done on
+     * the calling thread; the encoding and writing that make up most of the
+     * cost of {@link #save save} are done by the task. For example:
+     * ```java
+     * Task saveTask = sessionStorage.createSaveTask(dialog, "dialog.xml");
+     * getContext().getTaskService().execute(saveTask);
+     * ```
+     * <p>
+     * Saves that have been created but haven't been written yet can be 
+     * written immediately with {@link #flush flush}, which applications should
+     * do before they exit.</p>
+     * <p>
+     * The task belongs to the context's application, so this method can only 
+     * be used once the application has been launched.</p>
+     *
+     * @param root the root of the Component hierarchy to be saved.
+     * @param fileName the <code>LocalStorage</code> filename.
+     * @return a task that writes the captured session state
+     * 
+     * @see #save(java.awt.Component, java.lang.String) 
+     * @see #flush() 
+     */
+    public Task<Void, Void> createSaveTask(Component root, String fileName) {
+        checkSaveRestoreArgs(root, fileName);
+        SaveTask task = new SaveTask(capture(Collections.singletonList(root), 
+                fileName), fileName);
+        pendingSaves.add(task);
+        return task;
+    }
+
+    /**
+     * Writes the session state captured by every task created with {@link 
+     * #createSaveTask createSaveTask} that hasn't been written yet, and waits
+     * for those that are being written to finish. Tasks whose state is 
+     * written by this method have nothing left to do when they run.
+     * 
+     * @throws IOException if any of the session states couldn't be written
+     */
+    public void flush() throws IOException {
+        IOException failure = null;
+        for (SaveTask task : pendingSaves) {
+            try {
+                if (task.claim()) {
+                    task.writeState();
+                } else {
+                    task.get();
+                }
+            } catch (IOException e) {
+                failure = e;
+            } catch (ExecutionException e) {
+                // Already logged by the task
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("session flush interrupted");
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /* Writes a session state captured by createSaveTask(). Whichever of the
+     * task and flush() claims it first does the write.
+     */
+    private class SaveTask extends Task<Void, Void> {
+
+        private final Map<String, Object> stateMap;
+        private final String fileName;
+        private final AtomicBoolean claimed = new AtomicBoolean(false);
+
+        SaveTask(Map<String, Object> stateMap, String fileName) {
+            super(context.getApplication());
+            this.stateMap = stateMap;
+            this.fileName = fileName;
+            setUserCanCancel(false);
+        }
+
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+
+        void writeState() throws IOException {
+            try {
+                write(stateMap, fileName);
+            } finally {
+                pendingSaves.remove(this);
+            }
+        }
+
+        @Override
+        protected Void doInBackground() throws IOException {
+            if (claim()) {
+                writeState();
+            }
+            return null;
+        }
+
+        @Override
+        protected void failed(Throwable cause) {
+            String msg = String.format("couldn't save session [%s]", fileName);
+            logger.log(Level.WARNING, msg, cause);
+        }
+    }
+
+    /* The half of save() that reads the component tree, and so must run on
+     * the EDT. State restored from fileName for components that haven't 
+     * been realized yet is written once more, so that it isn't lost by 
+     * saving the window before they are, and then forgotten. The state of 
+     * other roots that share the file is carried over.
+     */
+    Map<String, Object> capture(Collection<? extends Component> roots, 
+            String fileName) {
         Map<String, Object> stateMap = new HashMap<>();
-        saveTree(Collections.singletonList(root), stateMap);
+        List<String> rootPaths = new ArrayList<>(roots.size());
+        for (Component root : roots) {
+            saveTree(root, stateMap);
+            String rootPath = getComponentPath(root);
+            if (rootPath != null) {
+                rootPaths.add(rootPath);
+            }
+        }
+        Map<String, Object> deferred = deferredStates.remove(fileName);
+        if (deferred != null) {
+            deferred.forEach(stateMap::putIfAbsent);
+            deferredRestorer.update();
+        }
+        Map<String, Object> previous = capturedStates.get(fileName);
+        if (previous == null) {
+            SavedState saved = savedStates.get(fileName);
+            previous = (saved == null) ? null : saved.stateMap;
+        }
+        if (previous != null) {
+            for (Map.Entry<String, Object> e : previous.entrySet()) {
+                if (!isUnderAny(e.getKey(), rootPaths)) {
+                    stateMap.putIfAbsent(e.getKey(), e.getValue());
+                }
+            }
+        }
+        capturedStates.put(fileName, stateMap);
+        return stateMap;
+    }
+
+    /* Pathnames end with the path of the component's root, see 
+     * getComponentPath().
+     */
+    private static boolean isUnder(String pathname, String rootPath) {
+        return pathname.endsWith(rootPath) 
+                && ((pathname.length() == rootPath.length()) 
+                || (pathname.charAt(pathname.length() - rootPath.length() - 1)
+                == '/'));
+    }
+
+    private static boolean isUnderAny(String pathname, List<String> rootPaths) {
+        for (String rootPath : rootPaths) {
+            if (isUnder(pathname, rootPath)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /* The half of save() that encodes and writes the state, which may run 
+     * on any thread.
+     */
+    void write(Map<String, Object> stateMap, String fileName) 
+            throws IOException {
         LocalStorage lst = getContext().getLocalStorage();
+        SavedState saved = savedStates.get(fileName);
+        if ((saved != null) && saved.stateMap.equals(stateMap)
+                && (saved.lastModified == lst.getLastModified(fileName))) {
+            logger.log(Level.FINE, "session state unchanged, not saving {0}",
+                    fileName);
+            return;
+        }
         lst.save(stateMap, fileName);
+        savedStates.put(fileName, new SavedState(stateMap, 
+                lst.getLastModified(fileName)));
     }
 
-    /* Recursively walk the component tree, breadth first, restoring the
-     * state - Property.setSessionState() - of named components for which 
-     * there's a non-null entry under the component's pathName in 
-     * stateMap.
+    /* The state last written to, or read from, a session file, and the
+     * file's modification time then. If the file has changed since, for 
+     * example because it was deleted, the state is written regardless.
+     */
+    private static class SavedState {
+
+        private final Map<String, Object> stateMap;
+        private final long lastModified;
+
+        SavedState(Map<String, Object> stateMap, long lastModified) {
+            this.stateMap = stateMap;
+            this.lastModified = lastModified;
+        }
+    }
+
+    /**
+     * Forgets the session state last saved to, or restored from, the 
+     * specified file, so that the next {@link #save save} writes it whether 
+     * or not the state has changed.
      * 
-     * Note: the breadth first tree-walking code here should remain 
-     * structurally identical to saveTree().
+     * @param fileName the <code>LocalStorage</code> filename
      */
-    private void restoreTree(List<Component> roots, Map<String, Object> stateMap) {
-        List<Component> allChildren = new ArrayList<>();
-        roots.stream().map((Component root) -> {
-            if (root != null) {
-                Property p = getProperty(root);
-                if (p != null) {
-                    String pathname = getComponentPathname(root);
-                    if (pathname != null) {
-                        Object state = stateMap.get(pathname);
-                        if (state != null) {
-                            p.setSessionState(root, state);
-                        } else {
-                            logger.log(Level.WARNING, "No saved state for {0}",
-                                    root);
+    public void invalidate(String fileName) {
+        if (fileName == null) {
+            throw new IllegalArgumentException("null fileName");
+        }
+        savedStates.remove(fileName);
+    }
+
+    /* Restore the state - Property.setSessionState() - of named components 
+     * for which there's a non-null entry under the component's pathName in 
+     * stateMap. The entries for root's hierarchy that don't match a 
+     * component are deferred until one is realized; the file may also hold
+     * the state of other roots.
+     */
+    private void restoreTree(Component root, Map<String, Object> stateMap,
+            String fileName) {
+        String rootPath = getComponentPath(root);
+        if (rootPath == null) {
+            return;
+        }
+        Map<String, Object> unmatched = new HashMap<>();
+        stateMap.forEach((pathname, state) -> {
+            if (isUnder(pathname, rootPath)) {
+                unmatched.put(pathname, state);
+            }
+        });
+        walkTree(root, (c, p, pathname) -> {
+            Object state = unmatched.remove(pathname);
+            if (state != null) {
+                p.setSessionState(c, state);
+            } else {
+                logger.log(Level.WARNING, "No saved state for {0}", c);
+            }
+        });
+        Map<String, Object> deferred = deferredStates.get(fileName);
+        if (deferred != null) {
+            deferred.keySet().removeIf(pathname -> isUnder(pathname, rootPath));
+        }
+        unmatched.forEach((pathname, state) -> {
+            if (state != null) {
+                deferredStates.computeIfAbsent(fileName, 
+                        k -> new HashMap<>()).put(pathname, state);
+            }
+        });
+        deferredRestorer.update();
+    }
+
+    /* Applies deferred state to components as they become displayable, 
+     * which happens when they, or the window that contains them, are first
+     * shown, or when they're added to a container that's already showing. 
+     * The listener is only installed while there's deferred state, because 
+     * a Toolkit hierarchy listener causes hierarchy events to be delivered
+     * for every component. When a window is disposed, the state deferred 
+     * for its components is dropped.
+     */
+    private class DeferredRestorer implements AWTEventListener {
+
+        private boolean installed = false;
+
+        void update() {
+            deferredStates.values().removeIf(Map::isEmpty);
+            boolean install = !deferredStates.isEmpty();
+            if (install != installed) {
+                Toolkit toolkit = Toolkit.getDefaultToolkit();
+                if (install) {
+                    toolkit.addAWTEventListener(this, 
+                            AWTEvent.HIERARCHY_EVENT_MASK);
+                } else {
+                    toolkit.removeAWTEventListener(this);
+                }
+                installed = install;
+            }
+        }
+
+        @Override
+        public void eventDispatched(AWTEvent event) {
+            if (!(event instanceof HierarchyEvent)) {
+                return;
+            }
+            HierarchyEvent e = (HierarchyEvent) event;
+            Component c = e.getComponent();
+            if (((e.getChangeFlags() & HierarchyEvent.DISPLAYABILITY_CHANGED) 
+                    == 0) || (e.getChanged() != c)) {
+                return;
+            }
+            if (!c.isDisplayable()) {
+                String windowPath = (c instanceof Window) 
+                        ? getComponentPath(c) : null;
+                if (windowPath == null) {
+                    return;
+                }
+                for (Map<String, Object> deferred : deferredStates.values()) {
+                    deferred.keySet().removeIf(pathname -> 
+                            isUnder(pathname, windowPath));
+                }
+            } else {
+                // Each component in the subtree gets its own event, but only 
+                // the subtree's root is reported as changed.
+                walkTree(c, (component, p, pathname) -> {
+                    Object state = null;
+                    for (Map<String, Object> deferred 
+                            : deferredStates.values()) {
+                        Object fileState = deferred.remove(pathname);
+                        if (fileState != null) {
+                            state = fileState;
                         }
                     }
-                }
+                    if (state != null) {
+                        p.setSessionState(component, state);
+                    }
+                });
             }
-            return root;
-        }).filter(root -> (root instanceof Container)).map(root -> 
-                ((Container) root).getComponents()).filter(children -> 
-                        ((children != null)
-                        && (children.length > 0))).forEachOrdered(children -> {
-            Collections.addAll(allChildren, children);
-        });
-        if (allChildren.size() > 0) {
-            restoreTree(allChildren, stateMap);
+            update();
         }
     }
 
@@ -424,6 +868,11 @@ public class SessionStorage {
      * {@link #getProperty(Component) Property} exists for that component, and
      * the component has a {@link java.awt.Component#getName name}, then its
      * state is {@link Property#setSessionState restored}.
+     * <p>
+     * Saved state for which there's no component in the hierarchy yet, like
+     * that of a tab or panel that's created on demand, is kept, and restored
+     * when a component with a matching pathname first becomes displayable.
+     * Until then, saves to the same file preserve it.</p>
      *
      * @param root the root of the Component hierarchy to be restored.
      * @param fileName the <code>LocalStorage</code> filename.
@@ -437,9 +886,24 @@ public class SessionStorage {
     public void restore(Component root, String fileName) throws IOException {
         checkSaveRestoreArgs(root, fileName);
         LocalStorage lst = getContext().getLocalStorage();
-        Map<String, Object> stateMap = (Map<String, Object>) (lst.load(fileName));
+        /* A file that holds the state of several roots is restored once per 
+         * root, but only read once, as long as it doesn't change.
+         */
+        SavedState saved = savedStates.get(fileName);
+        Map<String, Object> stateMap;
+        if ((saved != null) 
+                && (saved.lastModified == lst.getLastModified(fileName))) {
+            stateMap = saved.stateMap;
+        } else {
+            stateMap = (Map<String, Object>) (lst.load(fileName));
+            if (stateMap != null) {
+                savedStates.put(fileName, new SavedState(
+                        new HashMap<>(stateMap), 
+                        lst.getLastModified(fileName)));
+            }
+        }
         if (stateMap != null) {
-            restoreTree(Collections.singletonList(root), stateMap);
+            restoreTree(root, stateMap, fileName);
         }
     }
 
@@ -745,6 +1209,34 @@ public class SessionStorage {
         public void setGraphicsConfigurationBounds(Rectangle gcBounds) {
             this.gcBounds = (gcBounds == null) ? null : new Rectangle(gcBounds);
         }
+
+        /**
+         * Two <code>WindowState</code>s are equal if all of their properties
+         * are equal.
+         * 
+         * @param obj the object to compare with
+         * @return <code>true</code> if <code>obj</code> is an equal <code>
+         *          WindowState</code>
+         */
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof WindowState)) {
+                return false;
+            }
+            WindowState other = (WindowState) obj;
+            return bounds.equals(other.bounds) 
+                    && Objects.equals(gcBounds, other.gcBounds)
+                    && (screenCount == other.screenCount)
+                    && (frameState == other.frameState);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(bounds, gcBounds, screenCount, frameState);
+        }
     }
 
     /**
@@ -1013,6 +1505,32 @@ public class SessionStorage {
             }
             this.tabCount = tabCount;
         }
+
+        /**
+         * Two <code>TabbedPaneState</code>s are equal if their <code>
+         * selectedIndex</code> and <code>tabCount</code> are equal.
+         * 
+         * @param obj the object to compare with
+         * @return <code>true</code> if <code>obj</code> is an equal <code>
+         *          TabbedPaneState</code>
+         */
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof TabbedPaneState)) {
+                return false;
+            }
+            TabbedPaneState other = (TabbedPaneState) obj;
+            return (selectedIndex == other.selectedIndex)
+                    && (tabCount == other.tabCount);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * selectedIndex + tabCount;
+        }
     }
 
     /**
@@ -1116,6 +1634,18 @@ public class SessionStorage {
             }
         }
 
+        /**
+         * Constructs a default <code>SplitPaneState</code> object, with a
+         * horizontal split and the <code>dividerLocation</code> set to <code>
+         * -1</code>. {@link java.beans.XMLDecoder XMLDecoder} uses this 
+         * constructor when the state is loaded.
+         * 
+         * @see #setDividerLocation(int) 
+         * @see #setOrientation(int) 
+         */
+        public SplitPaneState() {
+        }
+
         /**
          * Constructs a new <code>SplitPaneState</code> object with the specified
          * orientation and divider location.
@@ -1213,6 +1743,32 @@ public class SessionStorage {
             checkOrientation(orientation);
             this.orientation = orientation;
         }
+
+        /**
+         * Two <code>SplitPaneState</code>s are equal if their <code>
+         * dividerLocation</code> and <code>orientation</code> are equal.
+         * 
+         * @param obj the object to compare with
+         * @return <code>true</code> if <code>obj</code> is an equal <code>
+         *          SplitPaneState</code>
+         */
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof SplitPaneState)) {
+                return false;
+            }
+            SplitPaneState other = (SplitPaneState) obj;
+            return (dividerLocation == other.dividerLocation)
+                    && (orientation == other.orientation);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * dividerLocation + orientation;
+        }
     }
 
     /**
@@ -1317,6 +1873,16 @@ public class SessionStorage {
             return copy;
         }
 
+        /**
+         * Constructs a default <code>TableState</code> object, with no column
+         * widths. {@link java.beans.XMLDecoder XMLDecoder} uses this 
+         * constructor when the state is loaded.
+         * 
+         * @see #setColumnWidths(int[]) 
+         */
+        public TableState() {
+        }
+
         /**
          * Constructs a new <code>TableState</code> object with the specified
          * column widths.
@@ -1355,6 +1921,30 @@ public class SessionStorage {
         public void setColumnWidths(int[] columnWidths) {
             this.columnWidths = copyColumnWidths(columnWidths);
         }
+
+        /**
+         * Two <code>TableState</code>s are equal if their column widths are
+         * equal.
+         * 
+         * @param obj the object to compare with
+         * @return <code>true</code> if <code>obj</code> is an equal <code>
+         *          TableState</code>
+         */
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof TableState)) {
+                return false;
+            }
+            return Arrays.equals(columnWidths, ((TableState) obj).columnWidths);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(columnWidths);
+        }
     }
 
     /**
@@ -1451,6 +2041,669 @@ public class SessionStorage {
         }
     }
 
+    /**
+     * This Java Bean records the layout of a JTable's columns: the order of
+     * the columns, the width of each, and the table's sort keys. Each is
+     * stored in a compact string, rather than as arrays, which {@link 
+     * java.beans.XMLEncoder XMLEncoder} would write an element per value for.
+     * <p>
+     * The column order lists the model index of each column, in view order, 
+     * as runs of consecutive indices, for example <code>"0-3,5,4,6-9"</code>.
+     * The column widths are listed in view order with repeated widths 
+     * run-length encoded, for example <code>"75*3,120,-1"</code>; as in {@link 
+     * TableState}, a width of -1 marks a column that isn't resizable. The 
+     * sort keys list the model index of each sorted column followed by 
+     * <code>A</code>, <code>D</code> or <code>U</code> for ascending, 
+     * descending and unsorted, for example <code>"2A,0D"</code>.</p>
+     *
+     * @see TableLayoutProperty
+     * @see #save(java.awt.Component, java.lang.String) 
+     * @see #restore(java.awt.Component, java.lang.String) 
+     */
+    public static class TableLayoutState {
+
+        private String columnOrder = "";
+        private String columnWidths = "";
+        private String sortKeys = "";
+
+        /**
+         * Constructs a default <code>TableLayoutState</code> object, for a 
+         * table with no columns. {@link java.beans.XMLDecoder XMLDecoder} 
+         * uses this constructor when the state is loaded.
+         */
+        public TableLayoutState() {
+        }
+
+        /**
+         * Constructs a new <code>TableLayoutState</code> object with the
+         * specified encoded layout.
+         * 
+         * @param columnOrder the model index of each column, in view order
+         * @param columnWidths the width of each column, in view order
+         * @param sortKeys the table's sort keys
+         */
+        public TableLayoutState(String columnOrder, String columnWidths,
+                String sortKeys) {
+            setColumnOrder(columnOrder);
+            setColumnWidths(columnWidths);
+            setSortKeys(sortKeys);
+        }
+
+        /**
+         * Returns the model index of each column, in view order, as runs of
+         * consecutive indices.
+         * 
+         * @return the encoded column order
+         */
+        public String getColumnOrder() {
+            return columnOrder;
+        }
+
+        /**
+         * Sets the model index of each column, in view order.
+         * 
+         * @param columnOrder the encoded column order
+         */
+        public void setColumnOrder(String columnOrder) {
+            if (columnOrder == null) {
+                throw new IllegalArgumentException("null columnOrder");
+            }
+            this.columnOrder = columnOrder;
+        }
+
+        /**
+         * Returns the width of each column, in view order, run-length 
+         * encoded.
+         * 
+         * @return the encoded column widths
+         */
+        public String getColumnWidths() {
+            return columnWidths;
+        }
+
+        /**
+         * Sets the width of each column, in view order.
+         * 
+         * @param columnWidths the encoded column widths
+         */
+        public void setColumnWidths(String columnWidths) {
+            if (columnWidths == null) {
+                throw new IllegalArgumentException("null columnWidths");
+            }
+            this.columnWidths = columnWidths;
+        }
+
+        /**
+         * Returns the table's sort keys.
+         * 
+         * @return the encoded sort keys, or an empty string if the table 
+         *          isn't sorted
+         */
+        public String getSortKeys() {
+            return sortKeys;
+        }
+
+        /**
+         * Sets the table's sort keys.
+         * 
+         * @param sortKeys the encoded sort keys
+         */
+        public void setSortKeys(String sortKeys) {
+            if (sortKeys == null) {
+                throw new IllegalArgumentException("null sortKeys");
+            }
+            this.sortKeys = sortKeys;
+        }
+
+        /**
+         * Two <code>TableLayoutState</code>s are equal if their <code>
+         * columnOrder</code>, <code>columnWidths</code> and <code>sortKeys
+         * </code> are equal.
+         * 
+         * @param obj the object to compare with
+         * @return <code>true</code> if <code>obj</code> is an equal <code>
+         *          TableLayoutState</code>
+         */
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof TableLayoutState)) {
+                return false;
+            }
+            TableLayoutState other = (TableLayoutState) obj;
+            return columnOrder.equals(other.columnOrder)
+                    && columnWidths.equals(other.columnWidths)
+                    && sortKeys.equals(other.sortKeys);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(columnOrder, columnWidths, sortKeys);
+        }
+    }
+
+    /**
+     * A <code>sessionState</code> property for JTable that saves and restores
+     * the order, width and sorting of the table's columns, as a {@link 
+     * TableLayoutState}. The columns are only restored if the number of 
+     * columns hasn't changed, and the sort keys only if the table has a 
+     * <code>RowSorter</code>. State saved by {@link TableProperty}, which 
+     * only recorded column widths, is restored too.
+     * <p>
+     * <code>TableLayoutProperty</code> is registered for 
+     * <code>JTable.class</code> by default. <code>TableProperty</code> can be 
+     * registered with {@link #putProperty putProperty} to save column widths
+     * alone.</p>
+     *
+     * @see TableLayoutState
+     * @see #save(java.awt.Component, java.lang.String) 
+     * @see #restore(java.awt.Component, java.lang.String) 
+     */
+    public static class TableLayoutProperty implements Property {
+
+        private void checkComponent(Component component) {
+            if (component == null) {
+                throw new IllegalArgumentException("null component");
+            }
+            if (!(component instanceof JTable)) {
+                throw new IllegalArgumentException("invalid component");
+            }
+        }
+
+        /**
+         * Returns a {@link TableLayoutState TableLayoutState} object for 
+         * <code>JTable c</code>, or null if it has no columns.
+         * <p>
+         * Throws an <code>IllegalArgumentException</code> if <code>Component 
+         * c</code> isn't a non-null <code>JTable</code>.</p>
+         *
+         * @param c the <code>JTable</code> whose column layout will be saved
+         * @return the <code>TableLayoutState</code> object or null
+         * @see #setSessionState(java.awt.Component, java.lang.Object) 
+         */
+        @Override
+        public Object getSessionState(Component c) {
+            checkComponent(c);
+            JTable table = (JTable) c;
+            TableColumnModel columns = table.getColumnModel();
+            int n = columns.getColumnCount();
+            if (n == 0) {
+                return null;
+            }
+            int[] order = new int[n];
+            int[] widths = new int[n];
+            for (int i = 0; i < n; i++) {
+                TableColumn tc = columns.getColumn(i);
+                order[i] = tc.getModelIndex();
+                widths[i] = (tc.getResizable()) ? tc.getWidth() : -1;
+            }
+            StringBuilder sortKeys = new StringBuilder();
+            RowSorter<?> sorter = table.getRowSorter();
+            if (sorter != null) {
+                for (RowSorter.SortKey key : sorter.getSortKeys()) {
+                    if (sortKeys.length() > 0) {
+                        sortKeys.append(',');
+                    }
+                    sortKeys.append(key.getColumn());
+                    switch (key.getSortOrder()) {
+                        case ASCENDING:
+                            sortKeys.append('A');
+                            break;
+                        case DESCENDING:
+                            sortKeys.append('D');
+                            break;
+                        default:
+                            sortKeys.append('U');
+                    }
+                }
+            }
+            return new TableLayoutState(encodeRanges(order), 
+                    encodeRuns(widths), sortKeys.toString());
+        }
+
+        /**
+         * Restore the order and width of the table's columns, if the number
+         * of columns hasn't changed, and its sort keys.
+         * <p>
+         * Throws an <code>IllegalArgumentException</code> if <code>c</code> 
+         * is not a <code>JTable</code> or if <code>state</code> is not an 
+         * instance of {@link TableLayoutState} or {@link TableState}.</p>
+         *
+         * @param c the JTable whose column layout is to be restored
+         * @param state the <code>TableLayoutState</code> to be restored
+         * @see #getSessionState(java.awt.Component) 
+         */
+        @Override
+        public void setSessionState(Component c, Object state) {
+            checkComponent(c);
+            if (state instanceof TableState) {
+                new TableProperty().setSessionState(c, state);
+                return;
+            }
+            if (!(state instanceof TableLayoutState)) {
+                throw new IllegalArgumentException("invalid state");
+            }
+            JTable table = (JTable) c;
+            TableLayoutState tls = (TableLayoutState) state;
+            TableColumnModel columns = table.getColumnModel();
+            int n = columns.getColumnCount();
+            try {
+                int[] order = decodeRanges(tls.getColumnOrder(), n);
+                int[] widths = decodeRuns(tls.getColumnWidths(), n);
+                if ((order != null) && (widths != null)) {
+                    restoreColumns(columns, order, widths);
+                }
+                RowSorter<?> sorter = table.getRowSorter();
+                if ((sorter != null) && !tls.getSortKeys().isEmpty()) {
+                    List<RowSorter.SortKey> keys = decodeSortKeys(
+                            tls.getSortKeys(), 
+                            table.getModel().getColumnCount());
+                    if (keys != null) {
+                        sorter.setSortKeys(keys);
+                    }
+                }
+            } catch (NumberFormatException e) {
+                logger.log(Level.WARNING, "invalid table layout", e);
+            }
+        }
+
+        private void restoreColumns(TableColumnModel columns, int[] order,
+                int[] widths) {
+            int n = order.length;
+            /* Look columns up by model index: sort the model indices, and 
+             * keep each column at its index's rank. Every saved index must
+             * match a different column, or the table has changed.
+             */
+            int[] sorted = new int[n];
+            for (int i = 0; i < n; i++) {
+                sorted[i] = columns.getColumn(i).getModelIndex();
+            }
+            Arrays.sort(sorted);
+            TableColumn[] byRank = new TableColumn[n];
+            for (int i = 0; i < n; i++) {
+                TableColumn tc = columns.getColumn(i);
+                int rank = Arrays.binarySearch(sorted, tc.getModelIndex());
+                if (byRank[rank] != null) {
+                    return;
+                }
+                byRank[rank] = tc;
+            }
+            TableColumn[] target = new TableColumn[n];
+            boolean[] seen = new boolean[n];
+            for (int i = 0; i < n; i++) {
+                int rank = Arrays.binarySearch(sorted, order[i]);
+                if ((rank < 0) || seen[rank]) {
+                    return;
+                }
+                seen[rank] = true;
+                target[i] = byRank[rank];
+            }
+            for (int i = 0; i < n; i++) {
+                TableColumn tc = target[i];
+                int from = indexOf(columns, tc, i);
+                if (from != i) {
+                    columns.moveColumn(from, i);
+                }
+                if ((widths[i] != -1) && tc.getResizable()) {
+                    tc.setPreferredWidth(widths[i]);
+                }
+            }
+        }
+
+        private int indexOf(TableColumnModel columns, TableColumn tc, 
+                int start) {
+            for (int i = start; i < columns.getColumnCount(); i++) {
+                if (columns.getColumn(i) == tc) {
+                    return i;
+                }
+            }
+            return start;
+        }
+
+        private List<RowSorter.SortKey> decodeSortKeys(String s, 
+                int columnCount) {
+            String[] tokens = s.split(",");
+            List<RowSorter.SortKey> keys = new ArrayList<>(tokens.length);
+            for (String token : tokens) {
+                int last = token.length() - 1;
+                if (last < 1) {
+                    return null;
+                }
+                int column = Integer.parseInt(token.substring(0, last));
+                if ((column < 0) || (column >= columnCount)) {
+                    return null;
+                }
+                SortOrder order;
+                switch (token.charAt(last)) {
+                    case 'A':
+                        order = SortOrder.ASCENDING;
+                        break;
+                    case 'D':
+                        order = SortOrder.DESCENDING;
+                        break;
+                    default:
+                        order = SortOrder.UNSORTED;
+                }
+                keys.add(new RowSorter.SortKey(column, order));
+            }
+            return keys;
+        }
+    }
+
+    /* Encodes an int[] as comma separated runs of consecutive, ascending
+     * values: {0, 1, 2, 3, 5, 4} => "0-3,5,4".
+     */
+    private static String encodeRanges(int[] values) {
+        StringBuilder sb = new StringBuilder();
+        int i = 0;
+        while (i < values.length) {
+            int j = i;
+            while ((j + 1 < values.length) && (values[j + 1] == values[j] + 1)) {
+                j++;
+            }
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(values[i]);
+            if (j > i) {
+                sb.append('-').append(values[j]);
+            }
+            i = j + 1;
+        }
+        return sb.toString();
+    }
+
+    /* Returns null if s doesn't encode exactly n values. */
+    private static int[] decodeRanges(String s, int n) {
+        int[] values = new int[n];
+        int count = 0;
+        if (!s.isEmpty()) {
+            for (String token : s.split(",")) {
+                int dash = token.indexOf('-', 1);
+                int first = Integer.parseInt((dash < 0) ? token 
+                        : token.substring(0, dash));
+                int last = (dash < 0) ? first 
+                        : Integer.parseInt(token.substring(dash + 1));
+                if ((last < first) || (last - first >= n - count)) {
+                    return null;
+                }
+                for (int v = first; v <= last; v++) {
+                    values[count++] = v;
+                }
+            }
+        }
+        return (count == n) ? values : null;
+    }
+
+    /* Encodes an int[] as comma separated values, with repeated values
+     * written once with a count: {75, 75, 75, 120} => "75*3,120".
+     */
+    private static String encodeRuns(int[] values) {
+        StringBuilder sb = new StringBuilder();
+        int i = 0;
+        while (i < values.length) {
+            int j = i;
+            while ((j + 1 < values.length) && (values[j + 1] == values[i])) {
+                j++;
+            }
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(values[i]);
+            if (j > i) {
+                sb.append('*').append(j - i + 1);
+            }
+            i = j + 1;
+        }
+        return sb.toString();
+    }
+
+    /* Returns null if s doesn't encode exactly n values. */
+    private static int[] decodeRuns(String s, int n) {
+        int[] values = new int[n];
+        int count = 0;
+        if (!s.isEmpty()) {
+            for (String token : s.split(",")) {
+                int star = token.indexOf('*');
+                int value = Integer.parseInt((star < 0) ? token 
+                        : token.substring(0, star));
+                int run = (star < 0) ? 1 
+                        : Integer.parseInt(token.substring(star + 1));
+                if ((run < 1) || (run > n - count)) {
+                    return null;
+                }
+                Arrays.fill(values, count, count + run, value);
+                count += run;
+            }
+        }
+        return (count == n) ? values : null;
+    }
+
+    /**
+     * This Java Bean records which nodes of a JTree are expanded. Each 
+     * expanded node is identified by a hash of its full path, computed from
+     * the text of every node on it, so that a node is only expanded if it's
+     * still at the same place in the tree, whatever row it's now shown on. 
+     * The hashes are stored as a Base64 encoded string, which keeps the 
+     * state of a tree with many thousands of rows compact.
+     *
+     * @see TreeProperty
+     * @see #save(java.awt.Component, java.lang.String) 
+     * @see #restore(java.awt.Component, java.lang.String) 
+     */
+    public static class TreeState {
+
+        private String expandedPaths = "";
+
+        /**
+         * Constructs a default <code>TreeState</code> object, with no 
+         * expanded nodes. {@link java.beans.XMLDecoder XMLDecoder} uses this 
+         * constructor when the state is loaded.
+         */
+        public TreeState() {
+        }
+
+        /**
+         * Constructs a new <code>TreeState</code> object with the specified
+         * encoded paths.
+         * 
+         * @param expandedPaths the Base64 encoded hash of each expanded path
+         */
+        public TreeState(String expandedPaths) {
+            setExpandedPaths(expandedPaths);
+        }
+
+        /**
+         * Returns the hash of each expanded node's path, in row order, as 
+         * Base64 encoded big-endian <code>int</code>s.
+         * 
+         * @return the encoded path hashes
+         */
+        public String getExpandedPaths() {
+            return expandedPaths;
+        }
+
+        /**
+         * Sets the hash of each expanded node's path.
+         * 
+         * @param expandedPaths the encoded path hashes
+         */
+        public void setExpandedPaths(String expandedPaths) {
+            if (expandedPaths == null) {
+                throw new IllegalArgumentException("null expandedPaths");
+            }
+            this.expandedPaths = expandedPaths;
+        }
+
+        /**
+         * Two <code>TreeState</code>s are equal if their <code>expandedPaths
+         * </code> are equal.
+         * 
+         * @param obj the object to compare with
+         * @return <code>true</code> if <code>obj</code> is an equal <code>
+         *          TreeState</code>
+         */
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof TreeState)) {
+                return false;
+            }
+            TreeState other = (TreeState) obj;
+            return expandedPaths.equals(other.expandedPaths);
+        }
+
+        @Override
+        public int hashCode() {
+            return expandedPaths.hashCode();
+        }
+    }
+
+    /**
+     * A <code>sessionState</code> property for JTree.
+     * <p>
+     * This class saves and restores which of a <code>JTree's</code> nodes 
+     * are expanded, as a {@link TreeState}. Saving and restoring take time 
+     * proportional to the number of rows. A saved node is only expanded if
+     * a node with the same path, per the <code>toString()</code> of each of 
+     * its components, is shown when it's restored, so changes to the tree's 
+     * model expand the nodes that are still there, wherever they now are, 
+     * rather than the wrong nodes. Rarely, a node whose path hash happens to
+     * match a saved one is expanded too.</p>
+     * <p>
+     * <code>TreeProperty</code> is registered for <code>JTree.class</code> by
+     * default, so this class applies to JTree and any subclass of JTree. One 
+     * can override the default with the {@link #putProperty putProperty} 
+     * method.</p>
+     *
+     * @see TreeState
+     * @see #save(java.awt.Component, java.lang.String) 
+     * @see #restore(java.awt.Component, java.lang.String) 
+     */
+    public static class TreeProperty implements Property {
+
+        private void checkComponent(Component component) {
+            if (component == null) {
+                throw new IllegalArgumentException("null component");
+            }
+            if (!(component instanceof JTree)) {
+                throw new IllegalArgumentException("invalid component");
+            }
+        }
+
+        /* Hashes the paths of a tree's rows, in row order. Rows are shown 
+         * in depth-first order, so the parent of each row is the nearest 
+         * row above it with one less path component, and its hash is the 
+         * one last computed for that depth.
+         */
+        private static final class PathHasher {
+
+            private int[] depthHashes = new int[16];
+
+            int hash(TreePath path) {
+                int depth = path.getPathCount();
+                if (depth > depthHashes.length) {
+                    depthHashes = Arrays.copyOf(depthHashes, 
+                            Math.max(depth, depthHashes.length * 2));
+                }
+                int parentHash = (depth > 1) ? depthHashes[depth - 2] : 0;
+                int hash = (31 * parentHash) 
+                        + String.valueOf(path.getLastPathComponent()).hashCode();
+                depthHashes[depth - 1] = hash;
+                return hash;
+            }
+        }
+
+        /**
+         * Returns a {@link TreeState TreeState} object for <code>JTree 
+         * c</code>, or null if none of its rows are expanded.
+         * <p>
+         * Throws an <code>IllegalArgumentException</code> if <code>Component 
+         * c</code> isn't a non-null <code>JTree</code>.</p>
+         *
+         * @param c the <code>JTree</code> whose expanded nodes will be saved
+         * @return the <code>TreeState</code> object or null
+         * @see #setSessionState(java.awt.Component, java.lang.Object) 
+         */
+        @Override
+        public Object getSessionState(Component c) {
+            checkComponent(c);
+            JTree tree = (JTree) c;
+            int rowCount = tree.getRowCount();
+            PathHasher hasher = new PathHasher();
+            ByteBuffer hashes = ByteBuffer.allocate(64 * Integer.BYTES);
+            for (int row = 0; row < rowCount; row++) {
+                TreePath path = tree.getPathForRow(row);
+                if (path == null) {
+                    continue;
+                }
+                int hash = hasher.hash(path);
+                if (tree.isExpanded(row)) {
+                    if (!hashes.hasRemaining()) {
+                        hashes = ByteBuffer.allocate(hashes.capacity() * 2)
+                                .put(hashes.flip());
+                    }
+                    hashes.putInt(hash);
+                }
+            }
+            if (hashes.position() == 0) {
+                return null;
+            }
+            return new TreeState(Base64.getEncoder().encodeToString(
+                    Arrays.copyOf(hashes.array(), hashes.position())));
+        }
+
+        /**
+         * Expands the shown nodes whose paths match saved ones. Their 
+         * children are shown as each is expanded, and so expanded in turn.
+         * <p>
+         * Throws an <code>IllegalArgumentException</code> if <code>c</code> 
+         * is not a <code>JTree</code> or if <code>state</code> is not an 
+         * instance of {@link TreeState}.</p>
+         *
+         * @param c the JTree whose expanded nodes are to be restored
+         * @param state the <code>TreeState</code> to be restored
+         * @see #getSessionState(java.awt.Component) 
+         */
+        @Override
+        public void setSessionState(Component c, Object state) {
+            checkComponent(c);
+            if (!(state instanceof TreeState)) {
+                throw new IllegalArgumentException("invalid state");
+            }
+            JTree tree = (JTree) c;
+            TreeState ts = (TreeState) state;
+            int[] expanded;
+            try {
+                ByteBuffer hashes = ByteBuffer.wrap(
+                        Base64.getDecoder().decode(ts.getExpandedPaths()));
+                expanded = new int[hashes.remaining() / Integer.BYTES];
+                hashes.asIntBuffer().get(expanded);
+            } catch (IllegalArgumentException e) {
+                logger.log(Level.WARNING, "invalid tree state", e);
+                return;
+            }
+            if (expanded.length == 0) {
+                return;
+            }
+            Arrays.sort(expanded);
+            PathHasher hasher = new PathHasher();
+            // The row count grows as nodes are expanded
+            for (int row = 0; row < tree.getRowCount(); row++) {
+                TreePath path = tree.getPathForRow(row);
+                if ((path != null) 
+                        && (Arrays.binarySearch(expanded, hasher.hash(path)) 
+                        >= 0) && !tree.isExpanded(row)) {
+                    tree.expandRow(row);
+                }
+            }
+        }
+    }
+
     private void checkClassArg(Class cls) {
         if (cls == null) {
             throw new IllegalArgumentException("null class");
@@ -1479,14 +2732,27 @@ public class SessionStorage {
      */
     public Property getProperty(Class cls) {
         checkClassArg(cls);
-        while (cls != null) {
-            Property p = propertyMap.get(cls);
-            if (p != null) {
-                return p;
+        return propertyCache.get(cls).orElse(null);
+    }
+
+    /* Caches the result of the superclass walk for each class, including
+     * the classes, like JPanel and JLabel, for which there's no Property.
+     */
+    private ClassValue<Optional<Property>> createPropertyCache() {
+        return new ClassValue<Optional<Property>>() {
+            @Override
+            protected Optional<Property> computeValue(Class<?> type) {
+                Class cls = type;
+                while (cls != null) {
+                    Property p = propertyMap.get(cls);
+                    if (p != null) {
+                        return Optional.of(p);
+                    }
+                    cls = cls.getSuperclass();
+                }
+                return Optional.empty();
             }
-            cls = cls.getSuperclass();
-        }
-        return null;
+        };
     }
 
     /**
@@ -1510,7 +2776,12 @@ public class SessionStorage {
      */
     public void putProperty(Class cls, Property property) {
         checkClassArg(cls);
-        propertyMap.put(cls, property);
+        if (property == null) {
+            propertyMap.remove(cls);
+        } else {
+            propertyMap.put(cls, property);
+        }
+        propertyCache = createPropertyCache();
     }
 
     /**
@@ -37,12 +37,17 @@ package org.jdesktop.application;
 import java.awt.Component;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import org.jdesktop.swingworker.SwingWorker;
 import org.jdesktop.swingworker.SwingWorker.StateValue;
 
@@ -134,6 +139,14 @@ import org.jdesktop.swingworker.SwingWorker.StateValue;
  * <code>PropertyChangeListeners</code> run on the event dispatching thread.
  * This is also true of <code>TaskListeners</code>.</pre>
  * <p>
+ * Changes to the <code>title</code>, <code>description</code> and
+ * <code>message</code> properties that are made on a background thread are
+ * coalesced: listeners are notified at most once per {@link
+ * #getPropertyChangeInterval property change interval}, with the latest
+ * value, and always before the Task's <code>done</code> method runs. The
+ * <code>progress</code> property is coalesced in the same way by
+ * <code>SwingWorker</code> itself.</p>
+ * <p>
  * Unless specified otherwise specified, this class is thread-safe. All of the
  * Task properties can be get/set on any thread.</pre>
  *
@@ -152,6 +165,21 @@ import org.jdesktop.swingworker.SwingWorker.StateValue;
 public abstract class Task<T, V> extends SwingWorker<T, V> {
 
     private static final Logger logger = Logger.getLogger(Task.class.getName());
+
+    /**
+     * The lowest {@link #setPriority priority} a Task can have.
+     */
+    public static final int MIN_PRIORITY = 1;
+
+    /**
+     * The priority a Task has by default.
+     */
+    public static final int NORM_PRIORITY = 5;
+
+    /**
+     * The highest priority a Task can have.
+     */
+    public static final int MAX_PRIORITY = 10;
     private final Application application;
     private String resourcePrefix;
     private ResourceMap resourceMap;
@@ -165,8 +193,18 @@ public abstract class Task<T, V> extends SwingWorker<T, V> {
     private long startTime = -1L;
     private long doneTime = -1L;
     private boolean userCanCancel = true;
+    private int priority = NORM_PRIORITY;
     private boolean progressPropertyIsValid = false;
     private TaskService taskService = null;
+    private volatile Throwable rejection = null;
+    private int propertyChangeInterval = 50;
+    /* Property changes made off the EDT that haven't been fired yet: the
+     * oldest old value and the latest new value of each property, in the
+     * order the properties first changed. Guarded by itself.
+     */
+    private final Map<String, Object[]> pendingChanges = new LinkedHashMap<>();
+    private boolean flushScheduled = false;
+    private long lastFlushTime = 0L;
 
     /**
      * Specifies to what extent the GUI should be blocked when a Task is 
@@ -428,7 +466,7 @@ public abstract class Task<T, V> extends SwingWorker<T, V> {
             this.title = title;
             newTitle = this.title;
         }
-        firePropertyChange("title", oldTitle, newTitle);
+        fireCoalescedPropertyChange("title", oldTitle, newTitle);
     }
 
     /**
@@ -471,7 +509,7 @@ public abstract class Task<T, V> extends SwingWorker<T, V> {
             this.description = description;
             newDescription = this.description;
         }
-        firePropertyChange("description", oldDescription, newDescription);
+        fireCoalescedPropertyChange("description", oldDescription, newDescription);
     }
 
     /**
@@ -567,7 +605,7 @@ public abstract class Task<T, V> extends SwingWorker<T, V> {
             newMessage = this.message;
             messageTime = System.currentTimeMillis();
         }
-        firePropertyChange("message", oldMessage, newMessage);
+        fireCoalescedPropertyChange("message", oldMessage, newMessage);
     }
 
     /**
@@ -621,6 +659,104 @@ public abstract class Task<T, V> extends SwingWorker<T, V> {
         return unit.convert(dt, TimeUnit.MILLISECONDS);
     }
 
+    /**
+     * Returns the minimum interval between the property change notifications
+     * for changes to the <code>title</code>, <code>description</code> and
+     * <code>message</code> properties made on a background thread.
+     *
+     * @return the interval, in milliseconds
+     * 
+     * @see #setPropertyChangeInterval(int) 
+     */
+    public synchronized int getPropertyChangeInterval() {
+        return propertyChangeInterval;
+    }
+
+    /**
+     * Sets the minimum interval between the property change notifications
+     * for changes to the <code>title</code>, <code>description</code> and
+     * <code>message</code> properties made on a background thread. Changes
+     * made within an interval are delivered together, when it ends, and only
+     * the latest value of each property is reported. A Task that reports
+     * its status for every item it processes therefore updates the GUI at
+     * most once per interval, rather than queueing an event for each item.
+     * <p>
+     * With an interval of 0, changes are still coalesced, but delivered as
+     * soon as the event dispatching thread can. The default is 50
+     * milliseconds. Changes made on the event dispatching thread are always
+     * delivered immediately.</p>
+     *
+     * @param interval the interval, in milliseconds
+     * 
+     * @see #getPropertyChangeInterval() 
+     */
+    public synchronized void setPropertyChangeInterval(int interval) {
+        if (interval < 0) {
+            throw new IllegalArgumentException("invalid interval");
+        }
+        this.propertyChangeInterval = interval;
+    }
+
+    /* Fires the change at once on the EDT, after any that are pending.
+     * Elsewhere, it's merged with a pending change to the same property,
+     * and the pending changes are fired together on the EDT when the
+     * current interval ends.
+     */
+    private void fireCoalescedPropertyChange(String propertyName,
+            Object oldValue, Object newValue) {
+        if (SwingUtilities.isEventDispatchThread()) {
+            flushPropertyChanges();
+            firePropertyChange(propertyName, oldValue, newValue);
+            return;
+        }
+        if (!getPropertyChangeSupport().hasListeners(propertyName)) {
+            return;
+        }
+        // Read first: the Task's own lock is never taken inside pendingChanges
+        int interval = getPropertyChangeInterval();
+        int delay;
+        synchronized (pendingChanges) {
+            Object[] change = pendingChanges.get(propertyName);
+            if (change == null) {
+                pendingChanges.put(propertyName,
+                        new Object[]{oldValue, newValue});
+            } else {
+                change[1] = newValue;
+            }
+            if (flushScheduled) {
+                return;
+            }
+            flushScheduled = true;
+            long sinceFlush = System.currentTimeMillis() - lastFlushTime;
+            delay = (int) Math.max(0L, interval - sinceFlush);
+        }
+        if (delay == 0) {
+            SwingUtilities.invokeLater(this::flushPropertyChanges);
+        } else {
+            Timer timer = new Timer(delay, e -> flushPropertyChanges());
+            timer.setRepeats(false);
+            timer.start();
+        }
+    }
+
+    /* Runs on the EDT. */
+    private void flushPropertyChanges() {
+        List<Map.Entry<String, Object[]>> changes;
+        synchronized (pendingChanges) {
+            if (pendingChanges.isEmpty()) {
+                return;
+            }
+            changes = new ArrayList<>(pendingChanges.entrySet());
+            pendingChanges.clear();
+            flushScheduled = false;
+            lastFlushTime = System.currentTimeMillis();
+        }
+        for (Map.Entry<String, Object[]> change : changes) {
+            Object[] values = change.getValue();
+            firePropertyChange(change.getKey(), values[0], values[1]);
+        }
+    }
+
     /**
      * Returns the value of the <code>userCanCancel</code> property. The default
      * value of this property is true.
@@ -663,6 +799,52 @@ public abstract class Task<T, V> extends SwingWorker<T, V> {
         firePropertyChange("userCanCancel", oldValue, newValue);
     }
 
+    /**
+     * Returns the value of the <code>priority</code> property. The default
+     * value of this property is {@link #NORM_PRIORITY}.
+     *
+     * @return this Task's priority
+     * 
+     * @see #setPriority(int) 
+     */
+    public synchronized int getPriority() {
+        return priority;
+    }
+
+    /**
+     * Sets the <code>priority</code> property, a value between {@link 
+     * #MIN_PRIORITY} and {@link #MAX_PRIORITY}. A {@link PriorityTaskService}
+     * runs waiting Tasks with higher priorities first; other TaskServices 
+     * ignore this property. {@link TaskMonitor} makes the highest priority 
+     * Task the foreground Task.
+     * <p>
+     * This property may only be set before the Task is
+     * {@link TaskService#execute submitted} to a TaskService for execution. If
+     * it's called afterwards, an IllegalStateException is thrown.</p>
+     * <p>
+     * This is a bound property.</p>
+     *
+     * @param priority the new priority
+     * 
+     * @see #getPriority() 
+     * @see Action#priority() 
+     */
+    public final void setPriority(int priority) {
+        if ((priority < MIN_PRIORITY) || (priority > MAX_PRIORITY)) {
+            throw new IllegalArgumentException("invalid priority");
+        }
+        if (getTaskService() != null) {
+            throw new IllegalStateException("task already being executed");
+        }
+        int oldValue, newValue;
+        synchronized (this) {
+            oldValue = this.priority;
+            this.priority = priority;
+            newValue = this.priority;
+        }
+        firePropertyChange("priority", oldValue, newValue);
+    }
+
     /**
      * Returns true if the {@link #setProgress progress} property has been set.
      * Some Tasks don't update the progress property because it's difficult or
@@ -796,8 +978,11 @@ public abstract class Task<T, V> extends SwingWorker<T, V> {
      */
     @Override
     protected final void done() {
+        flushPropertyChanges();
         try {
-            if (isCancelled()) {
+            if (rejection != null) {
+                failed(rejection);
+            } else if (isCancelled()) {
                 cancelled();
             } else {
                 try {
@@ -817,6 +1002,17 @@ public abstract class Task<T, V> extends SwingWorker<T, V> {
         }
     }
 
+    /* Called by a TaskService that won't run this Task, because its queue is
+     * full. The Task completes without running: failed(cause) is called 
+     * instead of doInBackground, and the Task is removed from its service
+     * like any other that's done. Cancelling it is the only way to complete 
+     * a SwingWorker that hasn't run, so isCancelled() is true as well.
+     */
+    void rejected(Throwable cause) {
+        rejection = cause;
+        cancel(false);
+    }
+
     /**
      * Called when this Task has been cancelled by {@link #cancel(boolean)}.
      * <p>
@@ -1011,7 +1207,9 @@ public abstract class Task<T, V> extends SwingWorker<T, V> {
      */
     private void fireCompletionListeners() {
         try {
-            if (isCancelled()) {
+            if (rejection != null) {
+                fireFailedListeners(rejection);
+            } else if (isCancelled()) {
                 fireCancelledListeners();
             } else {
                 try {
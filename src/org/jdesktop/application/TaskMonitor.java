@@ -39,9 +39,11 @@ import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
 import org.jdesktop.swingworker.SwingWorker.StateValue;
 
 /**
@@ -68,11 +70,12 @@ import org.jdesktop.swingworker.SwingWorker.StateValue;
  * and "done" when the corresponding Task <code>state</code> property changes occur.
  * </p><p>
  * TaskMonitor manages a queue of new Tasks. The foregroundTask is automatically
- * set to the first new Task, and when that Task finishes, the next Task in the
- * queue, and so on. Applications can set the foregroundTask explicitly, to
- * better reflect what the user is doing. For example, a tabbed browsing GUI
- * that launched one Task per tab might set the foreground Task each time the
- * user selected a tab. To prevent the foregroundTask property from (ever) being
+ * set to the first new Task, and when that Task finishes, to the queued Task
+ * with the highest {@link Task#getPriority priority}, the most recent of
+ * those if there are several, and so on. Applications can set the 
+ * foregroundTask explicitly, to better reflect what the user is doing. For 
+ * example, a tabbed browsing GUI that launched one Task per tab might set the
+ * foreground Task each time the user selected a tab. To prevent the foregroundTask property from (ever) being
  * reset automatically, one must set {@link #setAutoUpdateForegroundTask
  * autoUpdateForegroundTask} to false.</p>
  * <p>
@@ -95,7 +98,17 @@ public class TaskMonitor extends AbstractBean {
     private final PropertyChangeListener applicationPCL;
     private final PropertyChangeListener taskServicePCL;
     private final PropertyChangeListener taskPCL;
-    private final LinkedList<Task> taskQueue;
+    /* In the order the Tasks were executed, with constant time lookup and
+     * removal. It's only changed on the EDT, holding its lock, so that 
+     * getTasks() can copy it on any thread.
+     */
+    private final LinkedHashSet<Task> taskQueue;
+    /* A snapshot of taskQueue for the "tasks" property, or null if it has 
+     * changed since. Copying the queue takes time proportional to its 
+     * length, so it's only done with each change while there are "tasks"
+     * listeners, and otherwise when getTasks() is called.
+     */
+    private volatile List<Task> tasks = Collections.emptyList();
     private boolean autoUpdateForegroundTask = true;
     private Task foregroundTask = null;
 
@@ -109,7 +122,7 @@ public class TaskMonitor extends AbstractBean {
         applicationPCL = new ApplicationPCL();
         taskServicePCL = new TaskServicePCL();
         taskPCL = new TaskPCL();
-        taskQueue = new LinkedList<>();
+        taskQueue = new LinkedHashSet<>();
         context.addPropertyChangeListener(applicationPCL);
         context.getTaskServices().forEach(taskService -> {
             taskService.addPropertyChangeListener(taskServicePCL);
@@ -191,16 +204,6 @@ public class TaskMonitor extends AbstractBean {
                 this.autoUpdateForegroundTask);
     }
 
-    private List<Task> copyTaskQueue() {
-        synchronized (taskQueue) {
-            if (taskQueue.isEmpty()) {
-                return Collections.emptyList();
-            } else {
-                return new ArrayList<>(taskQueue);
-            }
-        }
-    }
-
     /**
      * All of the Application Tasks whose <code>state</code> is not <code>DONE
      * </code>.
@@ -208,55 +211,110 @@ public class TaskMonitor extends AbstractBean {
      * Each time the list of Tasks changes, a PropertyChangeEvent for the
      * property named "tasks" is fired. Applications that want to monitor all
      * background Tasks should monitor the tasks property.</p>
+     * <p>
+     * The list is an unmodifiable snapshot, which doesn't change as Tasks
+     * are added and removed.</p>
      *
      * @return a list of all Tasks that aren't <code>DONE</code>
      */
     public List<Task> getTasks() {
-        return copyTaskQueue();
+        List<Task> snapshot = tasks;
+        if (snapshot == null) {
+            // Published under the lock, so that it can't outlive a change
+            synchronized (taskQueue) {
+                snapshot = tasks;
+                if (snapshot == null) {
+                    snapshot = taskQueue.isEmpty() ? Collections.emptyList()
+                            : Collections.unmodifiableList(
+                                    new ArrayList<>(taskQueue));
+                    tasks = snapshot;
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    /* Called on the EDT, each time a TaskService reports that it's added
+     * or removed a Task, i.e. each time a new Task is executed and each
+     * time a Task's state changes to DONE.
+     */
+    private void updateTasks(Task task, boolean added) {
+        if (added) {
+            // A Task that's already finished won't be reported again
+            changeTaskQueue(() -> !task.isDone() && taskQueue.add(task));
+        } else {
+            changeTaskQueue(() -> taskQueue.remove(task));
+        }
     }
 
-    /* Called on the EDT, each time a TaskService's list of tasks changes,
-     * i.e. each time a new Task is executed and each time a Task's
-     * state changes to DONE.
+    /* Called on the EDT, each time a TaskService's list of tasks changes
+     * without saying which Task changed.
      */
     private void updateTasks(List<Task> oldTasks, List<Task> newTasks) {
-        boolean tasksChanged = false;  // has the "tasks" property changed?
-        List<Task> oldTaskQueue = copyTaskQueue();
-        // Remove each oldTask that's not in the newTasks list from taskQueue
-        for (Task oldTask : oldTasks) {
-            if (!(newTasks.contains(oldTask))) {
-                if (taskQueue.remove(oldTask)) {
+        Set<Task> newTaskSet = new HashSet<>(newTasks);
+        changeTaskQueue(() -> {
+            boolean tasksChanged = false;
+            // Remove each oldTask that's not in the newTasks list
+            for (Task oldTask : oldTasks) {
+                if (!newTaskSet.contains(oldTask) 
+                        && taskQueue.remove(oldTask)) {
                     tasksChanged = true;
                 }
             }
-        }
-        // Add each newTask that's not in the oldTasks list to the taskQueue
-        for (Task newTask : newTasks) {
-            if (!(taskQueue.contains(newTask))) {
-                taskQueue.addLast(newTask);
-                tasksChanged = true;
+            // Add each newTask that's not already in the taskQueue
+            for (Task newTask : newTasks) {
+                if (!newTask.isDone() && taskQueue.add(newTask)) {
+                    tasksChanged = true;
+                }
             }
-        }
-        // Remove any tasks that are DONE for the sake of tasksChanged
-        Iterator<Task> tasks = taskQueue.iterator();
-        while (tasks.hasNext()) {
-            Task task = tasks.next();
-            if (task.isDone()) {
-                tasks.remove();
-                tasksChanged = true;
+            return tasksChanged;
+        });
+    }
+
+    /* Applies a change to the taskQueue, which returns true if it changed
+     * the queue, holding its lock. Then fires "tasks" if the queue changed,
+     * and picks a new foregroundTask if needed. Without "tasks" listeners,
+     * and while there's a foregroundTask, this takes constant time plus the
+     * change's own. Listeners added meanwhile aren't told about the change.
+     */
+    private void changeTaskQueue(BooleanSupplier change) {
+        boolean tasksChanged, notify;
+        List<Task> oldTasks = null;
+        synchronized (taskQueue) {
+            notify = hasPropertyChangeListeners("tasks");
+            if (notify) {
+                oldTasks = getTasks();  // made now if it wasn't before
+            }
+            tasksChanged = change.getAsBoolean();
+            if (tasksChanged) {
+                tasks = null;
             }
         }
-        // Maybe fire the "tasks" PCLs
-        if (tasksChanged) {
-            List<Task> newTaskQueue = copyTaskQueue();
-            firePropertyChange("tasks", oldTaskQueue, newTaskQueue);
+        if (tasksChanged && notify) {
+            firePropertyChange("tasks", oldTasks, getTasks());
         }
-
         if (autoUpdateForegroundTask && (getForegroundTask() == null)) {
-            setForegroundTask(taskQueue.isEmpty() ? null : taskQueue.getLast());
+            Task task = highestPriorityTask();
+            if (task != null) {
+                setForegroundTask(task);
+            }
         }
     }
 
+    /* The most recently added of the unfinished Tasks with the highest 
+     * priority. This scans the queue, but only when there's no 
+     * foregroundTask, i.e. once each time the foregroundTask finishes.
+     */
+    private Task highestPriorityTask() {
+        Task highest = null;
+        for (Task task : taskQueue) {
+            if (!task.isDone() && ((highest == null)
+                    || (task.getPriority() >= highest.getPriority()))) {
+                highest = task;
+            }
+        }
+        return highest;
+    }
 
     /* Each time an ApplicationContext TaskService is added or removed, we 
      * remove our taskServicePCL from the old ones, add it to the new
@@ -284,7 +342,8 @@ public class TaskMonitor extends AbstractBean {
 
     /* Each time a TaskService's list of Tasks (the "tasks" property) changes,
      * update the taskQueue (the "tasks" property) and possibly the 
-     * foregroundTask property.  See updateTasks().
+     * foregroundTask property, using the added or removed Task when the 
+     * service reports it.  See updateTasks().
      * This listener runs on the EDT.
      */
     private class TaskServicePCL implements PropertyChangeListener {
@@ -292,7 +351,11 @@ public class TaskMonitor extends AbstractBean {
         @Override
         public void propertyChange(PropertyChangeEvent e) {
             String propertyName = e.getPropertyName();
-            if ("tasks".equals(propertyName)) {
+            if (e instanceof TaskService.TasksChangeEvent) {
+                TaskService.TasksChangeEvent tce
+                        = (TaskService.TasksChangeEvent) e;
+                updateTasks(tce.getTask(), tce.isAdded());
+            } else if ("tasks".equals(propertyName)) {
                 List<Task> oldList = (List<Task>) e.getOldValue();
                 List<Task> newList = (List<Task>) e.getNewValue();
                 updateTasks(oldList, newList);
@@ -331,6 +394,7 @@ public class TaskMonitor extends AbstractBean {
                         case DONE:
                             fireStateChange(task, "done");
                             setForegroundTask(null);
+                            changeTaskQueue(() -> taskQueue.remove(task));
                     }
                 }
             }
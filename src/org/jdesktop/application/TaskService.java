@@ -39,10 +39,18 @@ import java.beans.PropertyChangeListener;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import javax.swing.SwingUtilities;
 
 /**
@@ -56,8 +64,52 @@ public class TaskService extends AbstractBean {
 
     private final String name;
     private final ExecutorService executorService;
-    private final List<Task> tasks;
+    /* Each unfinished Task, with the sequence number it was executed with,
+     * so that adding and removing one takes constant time without locking.
+     * The list getTasks() returns is only made when it's asked for, and 
+     * kept until the Tasks next change, which bumps the version.
+     */
+    private final Map<Task, Long> taskSequences = new ConcurrentHashMap<>();
+    private final AtomicLong taskSequence = new AtomicLong();
+    private final AtomicLong tasksVersion = new AtomicLong();
+    private final AtomicReference<TasksSnapshot> tasksSnapshot 
+            = new AtomicReference<>();
     private final PropertyChangeListener taskPCL;
+    private int queueDepth = 0;
+
+    /**
+     * What a <code>TaskService</code> with a bounded queue does with a Task
+     * that's {@link #execute executed} when all of its threads are busy and 
+     * its queue is full.
+     * 
+     * @see TaskService#TaskService(java.lang.String, int, int, int, 
+     *          org.jdesktop.application.TaskService.RejectionPolicy) 
+     */
+    public enum RejectionPolicy {
+
+        /**
+         * Run the Task on the thread that called <code>execute</code>, which
+         * slows down the caller until the service catches up. If the caller 
+         * is the event dispatching thread, the GUI is unresponsive while the
+         * Task runs.
+         */
+        CALLER_RUNS,
+        /**
+         * Cancel the Task that's been waiting in the queue the longest, and
+         * queue the new Task in its place. The cancelled Task's 
+         * <code>cancelled</code> method is called. This policy only applies
+         * to the first-in first-out queue of a bounded 
+         * <code>TaskService</code>: a {@link PriorityTaskService} has an 
+         * unbounded queue, whose head is the highest priority Task rather 
+         * than the oldest.
+         */
+        DROP_OLDEST,
+        /**
+         * Don't run the Task. Its <code>failed</code> method is called with
+         * a <code>RejectedExecutionException</code>.
+         */
+        REJECT
+    }
 
     public TaskService(String name, ExecutorService executorService) {
         if (name == null) {
@@ -68,29 +120,200 @@ public class TaskService extends AbstractBean {
         }
         this.name = name;
         this.executorService = executorService;
-        this.tasks = new ArrayList<>();
         this.taskPCL = new TaskPCL();
     }
 
+    /* A ThreadPoolExecutor only adds threads beyond its core pool size when
+     * its queue is full, which an unbounded queue never is. So the default
+     * pool has a core size of 10, the maximum, and lets idle core threads
+     * time out, rather than never growing past 3 threads.
+     */
     public TaskService(String name) {
-        this(name, new ThreadPoolExecutor(
-                3, // corePool size
-                10, // maximumPool size
+        this(name, newThreadPool(name, 10, 10, Integer.MAX_VALUE, 
+                RejectionPolicy.REJECT));
+    }
+
+    /**
+     * Constructs a <code>TaskService</code> whose pool of threads grows from
+     * <code>corePoolSize</code> to <code>maximumPoolSize</code> as Tasks are
+     * queued, and which queues at most <code>capacity</code> Tasks. Once all
+     * of the threads are busy and the queue is full, further Tasks are 
+     * handled per the <code>rejectionPolicy</code>. Threads beyond the core 
+     * pool size stop after they've been idle for a second, and the threads 
+     * are named after the service.
+     * 
+     * @param name the name of the service
+     * @param corePoolSize the number of threads kept while the service is
+     *          idle
+     * @param maximumPoolSize the maximum number of threads
+     * @param capacity the maximum number of Tasks waiting for a thread
+     * @param rejectionPolicy what to do with a Task when the queue is full
+     * 
+     * @see #getQueueDepth() 
+     */
+    public TaskService(String name, int corePoolSize, int maximumPoolSize,
+            int capacity, RejectionPolicy rejectionPolicy) {
+        this(name, newThreadPool(name, corePoolSize, maximumPoolSize, 
+                capacity, rejectionPolicy));
+    }
+
+    private static ExecutorService newThreadPool(String name, 
+            int corePoolSize, int maximumPoolSize, int capacity, 
+            RejectionPolicy rejectionPolicy) {
+        if (name == null) {
+            throw new IllegalArgumentException("null name");
+        }
+        if ((corePoolSize < 0) || (maximumPoolSize < 1) 
+                || (maximumPoolSize < corePoolSize)) {
+            throw new IllegalArgumentException("invalid pool size");
+        }
+        if (capacity < 1) {
+            throw new IllegalArgumentException("invalid capacity");
+        }
+        if (rejectionPolicy == null) {
+            throw new IllegalArgumentException("null rejectionPolicy");
+        }
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        ThreadFactory threadFactory = r -> new Thread(r, name + "-" 
+                + threadNumber.getAndIncrement());
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(corePoolSize, 
+                maximumPoolSize, 
                 1L, TimeUnit.SECONDS, // non-core threads time to live
-                new LinkedBlockingQueue<Runnable>()));
+                new LinkedBlockingQueue<>(capacity), threadFactory, 
+                new RejectionHandler(rejectionPolicy));
+        if (corePoolSize == maximumPoolSize) {
+            pool.allowCoreThreadTimeOut(true);
+        }
+        return pool;
+    }
+
+    private static class RejectionHandler implements RejectedExecutionHandler {
+
+        private final RejectionPolicy policy;
+
+        RejectionHandler(RejectionPolicy policy) {
+            this.policy = policy;
+        }
+
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor pool) {
+            if (pool.isShutdown()) {
+                reject(r, "TaskService has been shut down");
+                return;
+            }
+            switch (policy) {
+                case CALLER_RUNS:
+                    r.run();
+                    break;
+                case DROP_OLDEST:
+                    /* Only installed by newThreadPool, whose queue is first 
+                     * in first out and holds the Tasks themselves, so its
+                     * head is the oldest Task.
+                     */
+                    Runnable oldest = pool.getQueue().poll();
+                    if (oldest instanceof Task) {
+                        ((Task) oldest).cancel(false);
+                    }
+                    pool.execute(r);
+                    break;
+                default:
+                    reject(r, "TaskService queue is full");
+            }
+        }
+
+        private void reject(Runnable r, String msg) {
+            RejectedExecutionException e = new RejectedExecutionException(msg);
+            if (r instanceof Task) {
+                ((Task) r).rejected(e);
+            } else {
+                throw e;
+            }
+        }
     }
 
     public final String getName() {
         return name;
     }
 
-    private List<Task> copyTasksList() {
-        synchronized (tasks) {
-            if (tasks.isEmpty()) {
-                return Collections.emptyList();
-            } else {
-                return new ArrayList<>(tasks);
+    /**
+     * The <code>PropertyChangeEvent</code> fired for the <code>"tasks"</code>
+     * property. Each one reports a single Task added to or removed from the
+     * service. So that executing and finishing a Task doesn't take time
+     * proportional to the number of Tasks, its old and new values are null:
+     * listeners that want the whole list can call {@link 
+     * TaskService#getTasks() getTasks}, and those that track the Tasks 
+     * themselves, like {@link TaskMonitor}, can use the change.
+     * <p>
+     * Tasks aren't serializable, so the Task that changed isn't serialized
+     * with the event.</p>
+     */
+    public static class TasksChangeEvent extends PropertyChangeEvent {
+
+        private static final long serialVersionUID = -3829016457213058491L;
+
+        private final transient Task task;
+        private final boolean added;
+
+        /**
+         * Constructs a <code>TasksChangeEvent</code>.
+         *
+         * @param source the TaskService whose Tasks changed
+         * @param task the Task that was added or removed
+         * @param added <code>true</code> if <code>task</code> was added
+         */
+        public TasksChangeEvent(TaskService source, Task task, boolean added) {
+            super(source, "tasks", null, null);
+            if (task == null) {
+                throw new IllegalArgumentException("null task");
             }
+            this.task = task;
+            this.added = added;
+        }
+
+        /**
+         * Returns the Task that was added or removed, or null if this event
+         * has been deserialized.
+         *
+         * @return the Task that changed
+         */
+        public final Task getTask() {
+            return task;
+        }
+
+        /**
+         * Indicates whether the Task was added, when it was executed, or
+         * removed, when it finished.
+         *
+         * @return <code>true</code> if the Task was added
+         */
+        public final boolean isAdded() {
+            return added;
+        }
+    }
+
+    /* The list of Tasks as of a version of taskSequences. */
+    private static class TasksSnapshot {
+
+        private final long version;
+        private final List<Task> tasks;
+
+        TasksSnapshot(long version, List<Task> tasks) {
+            this.version = version;
+            this.tasks = tasks;
+        }
+    }
+
+    /* Records the change, and fires it if the Task wasn't already added, or
+     * already removed.
+     */
+    private void updateTasks(Task task, boolean added) {
+        boolean changed = added 
+                ? (taskSequences.putIfAbsent(task, 
+                        taskSequence.getAndIncrement()) == null)
+                : (taskSequences.remove(task) != null);
+        if (changed) {
+            tasksVersion.incrementAndGet();
+            firePropertyChange(new TasksChangeEvent(this, task, added));
         }
     }
 
@@ -99,21 +322,18 @@ public class TaskService extends AbstractBean {
         @Override
         public void propertyChange(PropertyChangeEvent e) {
             String propertyName = e.getPropertyName();
-            if ("done".equals(propertyName)) {
+            if ("started".equals(propertyName)) {
+                updateQueueDepth();
+            } else if ("done".equals(propertyName)) {
                 Task task = (Task) (e.getSource());
                 if (task.isDone()) {
-                    List<Task> oldTaskList, newTaskList;
-                    synchronized (tasks) {
-                        oldTaskList = copyTasksList();
-                        tasks.remove(task);
-                        task.removePropertyChangeListener(taskPCL);
-                        newTaskList = copyTasksList();
-                    }
-                    firePropertyChange("tasks", oldTaskList, newTaskList);
+                    task.removePropertyChangeListener(taskPCL);
+                    updateTasks(task, false);
                     Task.InputBlocker inputBlocker = task.getInputBlocker();
                     if (inputBlocker != null) {
                         inputBlocker.unblock();
                     }
+                    updateQueueDepth();
                 }
             }
         }
@@ -145,20 +365,75 @@ public class TaskService extends AbstractBean {
         }
         task.setTaskService(this);
         // TBD: what if task has already been submitted?
-        List<Task> oldTaskList, newTaskList;
-        synchronized (tasks) {
-            oldTaskList = copyTasksList();
-            tasks.add(task);
-            newTaskList = copyTasksList();
-            task.addPropertyChangeListener(taskPCL);
-        }
-        firePropertyChange("tasks", oldTaskList, newTaskList);
+        task.addPropertyChangeListener(taskPCL);
+        updateTasks(task, true);
         maybeBlockTask(task);
         executorService.execute(task);
+        updateQueueDepth();
+    }
+
+    /**
+     * Returns the number of Tasks that have been executed by this service 
+     * but are still waiting for a thread. This is always 0 if the service's
+     * <code>ExecutorService</code> isn't a <code>ThreadPoolExecutor</code>.
+     * <p>
+     * This is a read-only bound property. It's updated when Tasks are 
+     * executed, start and finish.</p>
+     * 
+     * @return the value of the queueDepth property
+     */
+    public int getQueueDepth() {
+        if (executorService instanceof ThreadPoolExecutor) {
+            return ((ThreadPoolExecutor) executorService).getQueue().size();
+        }
+        return 0;
     }
 
+    private void updateQueueDepth() {
+        int oldValue, newValue = getQueueDepth();
+        synchronized (this) {
+            oldValue = queueDepth;
+            queueDepth = newValue;
+        }
+        firePropertyChange("queueDepth", oldValue, newValue);
+    }
+
+    /**
+     * Returns the Tasks that have been executed by this service and haven't
+     * finished yet. The list is an unmodifiable snapshot, which doesn't
+     * change as Tasks are added and removed.
+     * <p>
+     * This is a read-only bound property. Its changes are reported with
+     * {@link TasksChangeEvent TasksChangeEvents}.</p>
+     *
+     * @return the Tasks this service is running or will run
+     */
     public List<Task> getTasks() {
-        return copyTasksList();
+        /* The version is read first, so a list made while the Tasks change
+         * may be newer than its version says, but never older: it's just 
+         * made again next time.
+         */
+        TasksSnapshot snapshot = tasksSnapshot.get();
+        long version = tasksVersion.get();
+        if ((snapshot != null) && (snapshot.version == version)) {
+            return snapshot.tasks;
+        }
+        List<Map.Entry<Task, Long>> entries 
+                = new ArrayList<>(taskSequences.entrySet());
+        List<Task> list;
+        if (entries.isEmpty()) {
+            list = Collections.emptyList();
+        } else {
+            entries.sort(Map.Entry.comparingByValue());
+            List<Task> ordered = new ArrayList<>(entries.size());
+            for (Map.Entry<Task, Long> entry : entries) {
+                ordered.add(entry.getKey());
+            }
+            list = Collections.unmodifiableList(ordered);
+        }
+        tasksSnapshot.compareAndSet(snapshot, new TasksSnapshot(version, 
+                list));
+        return list;
     }
 
     public final void shutdown() {
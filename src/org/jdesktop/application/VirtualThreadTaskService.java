@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2021 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jdesktop.application;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A <code>TaskService</code> that runs each {@link Task} on a thread of its
+ * own, rather than queueing Tasks for a small pool of threads. This suits
+ * Tasks that spend most of their time blocked on I/O, like JDBC queries or
+ * file and network transfers, which would otherwise wait for one another.
+ * <p>
+ * On Java 21 and later each Task runs on a virtual thread. On earlier
+ * releases, where virtual threads aren't available, Tasks run on daemon
+ * platform threads from an unbounded cached pool. Either way the threads are
+ * named after the service, <code><i>name</i>-<i>n</i></code>, so that they
+ * can be identified in thread dumps and profilers.</p>
+ * <p>
+ * Like any other <code>TaskService</code>, it's registered with the
+ * application's context, and can be selected by name for the Tasks
+ * returned by an <code>&#064;Action</code>:</p>
+ * ```java
+ * getContext().addTaskService(new VirtualThreadTaskService("io"));
+ * // ...
+ * &#064;Action(taskService = "io")
+ * public Task loadCustomers() {
+ *     return new LoadCustomersTask(getApplication());
+ * }
+ * ```
+ * <p>
+ * Tasks run by this service are monitored by {@link TaskMonitor} and block
+ * input per their {@link Task.InputBlocker InputBlocker} exactly as they
+ * would with the default service.</p>
+ *
+ * @see ApplicationContext#addTaskService(org.jdesktop.application.TaskService)
+ * @see Action#taskService()
+ *
+ * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
+ *
+ * @version 1.05
+ * @since 1.05
+ */
+public class VirtualThreadTaskService extends TaskService {
+
+    private static final Logger logger = Logger.getLogger(
+            VirtualThreadTaskService.class.getName());
+    private final boolean virtual;
+
+    /**
+     * Constructs a <code>VirtualThreadTaskService</code> with the specified
+     * name, which also prefixes the names of its threads.
+     *
+     * @param name the name of the service
+     */
+    public VirtualThreadTaskService(String name) {
+        this(name, newVirtualThreadExecutor(name));
+    }
+
+    private VirtualThreadTaskService(String name, ExecutorService virtual) {
+        super(name, (virtual != null) ? virtual : newPlatformThreadExecutor(
+                name));
+        this.virtual = (virtual != null);
+    }
+
+    /**
+     * Indicates whether this service's Tasks run on virtual threads, or, on
+     * releases that don't support them, on platform threads.
+     *
+     * @return <code>true</code> if Tasks run on virtual threads
+     */
+    public final boolean isVirtual() {
+        return virtual;
+    }
+
+    /* Executors.newThreadPerTaskExecutor(
+     *         Thread.ofVirtual().name(name + "-", 1).factory()),
+     * by reflection, because the framework is built for Java 11.
+     */
+    private static ExecutorService newVirtualThreadExecutor(String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("null name");
+        }
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class)
+                    .invoke(builder, name + "-", 1L);
+            ThreadFactory factory = (ThreadFactory) builderClass
+                    .getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod(
+                    "newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, factory);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Before Java 21, or a preview release run without --enable-preview
+            logger.log(Level.FINE, "virtual threads unavailable", e);
+            return null;
+        }
+    }
+
+    private static ExecutorService newPlatformThreadExecutor(String name) {
+        AtomicLong threadNumber = new AtomicLong(1L);
+        return Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, name + "-"
+                    + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}